@@ -0,0 +1,99 @@
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// End to end regrouping of a TabGenerator file (24 h at 1 Hz by default) the way
+// a kept tab file is processed: grouped files, counter file and all. The bytes and
+// lines counters are reported per second, i.e. as MB/s and lines/s.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+
+    @Param({"24"})
+    int hours;
+
+    @Param({"1"})
+    int interval;
+
+    @Param({"3"})
+    int systems;
+
+    @Param({"O", "P"})
+    FormatType layout;
+
+    @Param({"0.1", "0.5"})
+    double nullRatio;
+
+    @Param({"false", "true"})
+    boolean projected;
+
+    private File tabFile;
+    private File outputDir;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Throughput {
+        public long bytes;
+        public long lines;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            lines = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        tabFile = File.createTempFile("benchmark", layout == FormatType.P ? ".20p.tab" : ".20o.tab");
+        new TabGenerator(layout)
+                .setSystems(TabLineBenchmark.SYSTEMS.subList(0, systems))
+                .setInterval(interval * 1000L)
+                .setDuration(hours * 3_600_000L)
+                .setNullRatio(nullRatio)
+                .generate(tabFile);
+        outputDir = Files.createTempDirectory("benchmark").toFile();
+    }
+
+    @TearDown(Level.Invocation)
+    public void removeOutputs() throws IOException {
+        ConversionJob.deleteDirectory(new File(outputDir, SatelliteGrouper.GROUPED_DIR_NAME).toPath());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        ConversionJob.deleteDirectory(outputDir.toPath());
+        tabFile.delete();
+    }
+
+    @Benchmark
+    public void regroup(Throughput throughput) throws IOException, InterruptedException {
+        ConversionJob job = new ConversionJob(tabFile, outputDir, null, null, null)
+                .setObsTypes(projected ? List.of("C1", "L1") : null);
+        TabFileProcessor processor = job.createProcessor();
+        job.run(processor);
+        throughput.bytes += tabFile.length();
+        throughput.lines += processor.getLineCount();
+    }
+}
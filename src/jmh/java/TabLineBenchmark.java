@@ -0,0 +1,160 @@
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Per line cost of the hot paths on LINES observation lines of 1 Hz data:
+// splitting (TabLineCursor), formatting into a grouped file (ProjectionPlan),
+// counting (ComponentCounter.countChunk), plus the per header work.
+// Run with -prof gc for the allocation rate.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TabLineBenchmark {
+
+    static final int LINES = 65536;
+    // Systems of the generated data, the first `systems` of them are used
+    static final List<Constellation> SYSTEMS = List.of(Constellation.GPS, Constellation.GLONASS, Constellation.GALILEO,
+            Constellation.BEIDOU, Constellation.QZSS, Constellation.SBAS);
+
+    @Param({"3", "6"})
+    int systems;
+
+    @Param({"0.05", "0.5"})
+    double nullRatio;
+
+    private StringBuilder text;
+    private int[] lineStarts;
+    private int[] lineEnds;
+    private final TabLineCursor cursor = new TabLineCursor();
+    private final Map<String, ProjectionPlan> plans = new HashMap<>();
+    private final Map<String, ProjectionPlan> projectedPlans = new HashMap<>();
+    private Map<String, int[]> projections;
+    private String header;
+    private File output;
+    private ByteBufferPool buffers;
+
+    @Setup
+    public void setUp() throws IOException {
+        StringBuilder data = new StringBuilder();
+        // Enough epochs for LINES observations with every system present
+        new TabGenerator(FormatType.O)
+                .setSystems(SYSTEMS.subList(0, systems))
+                .setDuration(3_600_000)
+                .setNullRatio(nullRatio)
+                .generate(data);
+        text = new StringBuilder();
+        lineStarts = new int[LINES];
+        lineEnds = new int[LINES];
+        int lines = 0;
+        int start = 0;
+        while (lines < LINES) {
+            int end = data.indexOf("\n", start);
+            if (data.charAt(start) == '#') {
+                String systemHeader = data.substring(start, end);
+                String system = TabFormat.getTokens(systemHeader).get(1);
+                plans.put(system, ProjectionPlan.fromHeader(systemHeader, null));
+                projectedPlans.put(system, ProjectionPlan.fromHeader(systemHeader, List.of("C1", "L1")));
+                header = systemHeader;
+            } else {
+                lineStarts[lines] = text.length();
+                text.append(data, start, end);
+                lineEnds[lines] = text.length();
+                lines++;
+            }
+            start = end + 1;
+        }
+        projections = new HashMap<>();
+        projectedPlans.forEach((system, plan) -> projections.put(system, plan.getColumns()));
+        output = File.createTempFile("benchmark", ".txt");
+        buffers = new ByteBufferPool(ByteBufferPool.DEFAULT_BUFFER_SIZE, 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        output.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void splitLine(Blackhole blackhole) {
+        for (int i = 0; i < LINES; i++) {
+            cursor.reset(text, lineStarts[i], lineEnds[i]);
+            blackhole.consume(cursor.fieldCount());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void formatLine() throws IOException {
+        format(plans);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void formatProjectedLine() throws IOException {
+        format(projectedPlans);
+    }
+
+    private void format(Map<String, ProjectionPlan> layouts) throws IOException {
+        try (FixedWidthWriter writer = new FixedWidthWriter(output, false, buffers)) {
+            String system = null;
+            ProjectionPlan plan = null;
+            for (int i = 0; i < LINES; i++) {
+                cursor.reset(text, lineStarts[i], lineEnds[i]);
+                if (system == null || !cursor.fieldEquals(1, system)) {
+                    system = cursor.field(1);
+                    plan = layouts.get(system);
+                }
+                plan.writeProcessedLine(cursor, writer);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public String countLine() {
+        return ComponentCounter.countChunk(text, lineEnds, LINES, Map.of());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public String countProjectedLine() {
+        return ComponentCounter.countChunk(text, lineEnds, LINES, projections);
+    }
+
+    @Benchmark
+    public TabFormat.ColumnIndices headerIndices() {
+        return TabFormat.getHeaderIndices(header);
+    }
+
+    @Benchmark
+    public String formattedHeader() {
+        return TabFormat.getFormattedHeader(header, TabFormat.getHeaderIndices(header));
+    }
+
+    @Benchmark
+    public ProjectionPlan projectionPlan() {
+        return ProjectionPlan.fromHeader(header, Arrays.asList("C1", "L1"));
+    }
+}
@@ -0,0 +1,325 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Headless conversion of many RINEX files:
+// RinexApplication -batch -input <dir|glob> -output <dir> [-obs_types C1,L1] [-satsys GRE] [-threads N] [-windows N] [-keep_tab]
+//                  [-cache <dir>] [-cache_mb N] [-io_threads N] [-gzip] [-native] [-split_systems]
+//                  [-max_processes N] [-from 2020-01-01T10:00:00] [-to 2020-01-01T11:00:00]
+// Inputs kept with -keep_tab (*.tab) are regrouped without gfzrnx, -obs_types then selects the columns to keep.
+// With -cache converted inputs are stored in an ObservationCache and served from it on later runs.
+// With -gzip the grouped files and the counter file are written gzip compressed (*.gz).
+// With -native observation files are read by RinexObservationReader and gfzrnx is not needed.
+// With -split_systems every satellite system is converted by its own gfzrnx process.
+// -max_processes caps the gfzrnx processes running at once over all threads, windows and systems.
+// -from/-to regroup only that time range of *.tab inputs, read through their EpochIndex.
+public class BatchRunner {
+
+    public static final String BATCH_FLAG = "-batch";
+
+    private static class Options {
+        String input;
+        File outputDir;
+        List<String> obsTypes;
+        List<String> satSystems;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int timeWindows = 1;
+        int ioThreads = GroupedFileWriter.DEFAULT_IO_THREADS;
+        int maxProcesses = GfzrnxRunner.DEFAULT_MAX_PROCESSES;
+        boolean keepTab;
+        boolean gzip;
+        boolean nativeReader;
+        boolean splitSystems;
+        File cacheDir;
+        LocalDateTime from;
+        LocalDateTime to;
+        long cacheBytes = ObservationCache.DEFAULT_MAX_BYTES;
+    }
+
+    private static class FileResult {
+        final File inputFile;
+        final int exitCode;
+        final long lines;
+        final long nanos;
+        @Nullable
+        final Exception error;
+
+        private FileResult(File inputFile, int exitCode, long lines, long nanos, @Nullable Exception error) {
+            this.inputFile = inputFile;
+            this.exitCode = exitCode;
+            this.lines = lines;
+            this.nanos = nanos;
+            this.error = error;
+        }
+
+        boolean isSuccess() {
+            return error == null && exitCode == 0;
+        }
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    public static int run(String[] args) {
+        Options options;
+        try {
+            options = parseOptions(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            return 2;
+        }
+        List<File> inputs;
+        try {
+            inputs = findInputs(options.input);
+        } catch (IOException e) {
+            System.err.println("Не удалось получить список входных файлов: " + e.getMessage());
+            return 1;
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Входные файлы не найдены: " + options.input);
+            return 1;
+        }
+        if ((options.from != null || options.to != null) && !inputs.stream().allMatch(ConversionJob::isTabFile)) {
+            System.err.println("Интервал времени -from/-to задается только для файлов *.tab");
+            return 2;
+        }
+        // Kept tab files are regrouped directly, gfzrnx is only needed for RINEX inputs
+        String executable = null;
+        if (!options.nativeReader && !inputs.stream().allMatch(ConversionJob::isTabFile)) {
+            executable = GfzrnxRunner.findExecutable();
+            if (executable == null) {
+                System.err.println("EXE-файл программы GFZRNX не найден");
+                return 1;
+            }
+            GfzrnxRunner.setMaxProcesses(options.maxProcesses);
+        }
+        return runAll(inputs, executable, options);
+    }
+
+    private static int runAll(List<File> inputs, @Nullable String executable, Options options) {
+        long start = System.nanoTime();
+        ObservationCache cache = options.cacheDir == null ? null : new ObservationCache(options.cacheDir, options.cacheBytes);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(options.threads, inputs.size()));
+        CompletionService<FileResult> completionService = new ExecutorCompletionService<>(executor);
+        for (File input : inputs) {
+            completionService.submit(() -> convert(input, executable, cache, options));
+        }
+        int failed = 0;
+        long totalLines = 0;
+        long totalBytes = 0;
+        try {
+            for (int i = 0; i < inputs.size(); i++) {
+                FileResult result = completionService.take().get();
+                report(result);
+                if (result.isSuccess()) {
+                    totalLines += result.lines;
+                    totalBytes += result.inputFile.length();
+                } else {
+                    failed++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+            return 1;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.US, "Файлов: %d, успешно: %d, с ошибками: %d%n", inputs.size(), inputs.size() - failed, failed);
+        System.out.printf(Locale.US, "Время: %.1f с, %.1f МБ/с, %.0f строк/с%n", seconds,
+                totalBytes / 1e6 / seconds, totalLines / seconds);
+        return failed == 0 ? 0 : 1;
+    }
+
+    private static FileResult convert(File inputFile, @Nullable String executable, @Nullable ObservationCache cache,
+                                      Options options) {
+        long start = System.nanoTime();
+        File outputDir = new File(options.outputDir, inputFile.getName());
+        boolean tabInput = ConversionJob.isTabFile(inputFile);
+        File tabFile = options.keepTab && !tabInput ? new File(outputDir, inputFile.getName() + ConversionJob.TAB_SUFFIX) : null;
+        ConversionJob job = new ConversionJob(inputFile, outputDir, executable, options.satSystems, tabFile)
+                .setObsTypes(options.obsTypes)
+                .setCache(cache)
+                .setTimeRange(options.from, options.to)
+                .setTimeWindows(options.timeWindows)
+                .setIoThreads(options.ioThreads)
+                .setCompressOutput(options.gzip)
+                .setNativeReader(options.nativeReader)
+                .setSplitSystems(options.splitSystems);
+        TabFileProcessor processor = null;
+        try {
+            processor = job.createProcessor();
+            int exitCode = job.run(processor);
+            return new FileResult(inputFile, exitCode, processor.getLineCount(), System.nanoTime() - start, null);
+        } catch (Exception e) {
+            long lines = processor == null ? 0 : processor.getLineCount();
+            return new FileResult(inputFile, -1, lines, System.nanoTime() - start, e);
+        }
+    }
+
+    private static void report(FileResult result) {
+        double seconds = result.nanos / 1e9;
+        if (result.isSuccess()) {
+            System.out.printf(Locale.US, "OK     %s: %d строк, %.1f с, %.1f МБ/с%n", result.inputFile.getPath(), result.lines,
+                    seconds, result.inputFile.length() / 1e6 / seconds);
+        } else if (result.error != null) {
+            System.out.printf(Locale.US, "ОШИБКА %s: %s%n", result.inputFile.getPath(), result.error);
+        } else {
+            System.out.printf(Locale.US, "ОШИБКА %s: GFZRNX завершился с кодом %d%n", result.inputFile.getPath(), result.exitCode);
+        }
+    }
+
+    static List<File> findInputs(String input) throws IOException {
+        File file = new File(input);
+        if (file.isFile()) {
+            return List.of(file);
+        }
+        if (file.isDirectory()) {
+            try (Stream<Path> files = Files.list(file.toPath())) {
+                return files.map(Path::toFile)
+                        .filter(x -> x.isFile() && ConversionJob.getFormat(x) != FormatType.UNKNOWN)
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+        Path pattern = Paths.get(input);
+        Path directory = pattern.getParent() == null ? Paths.get(".") : pattern.getParent();
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern.getFileName());
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(x -> Files.isRegularFile(x) && matcher.matches(x.getFileName()))
+                    .map(Path::toFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static Options parseOptions(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-input":
+                    options.input = getValue(args, ++i, arg);
+                    break;
+                case "-output":
+                    options.outputDir = new File(getValue(args, ++i, arg));
+                    break;
+                case GfzrnxRunner.TYPES_PREFIX:
+                    options.obsTypes = Arrays.asList(getValue(args, ++i, arg).split(","));
+                    break;
+                case GfzrnxRunner.SAT_SYS_PREFIX:
+                    options.satSystems = splitSystems(getValue(args, ++i, arg));
+                    break;
+                case "-threads":
+                    options.threads = parsePositive(getValue(args, ++i, arg), arg);
+                    break;
+                case "-windows":
+                    options.timeWindows = parsePositive(getValue(args, ++i, arg), arg);
+                    break;
+                case "-io_threads":
+                    options.ioThreads = parsePositive(getValue(args, ++i, arg), arg);
+                    break;
+                case "-max_processes":
+                    options.maxProcesses = parsePositive(getValue(args, ++i, arg), arg);
+                    break;
+                case "-keep_tab":
+                    options.keepTab = true;
+                    break;
+                case "-gzip":
+                    options.gzip = true;
+                    break;
+                case "-native":
+                    options.nativeReader = true;
+                    break;
+                case "-split_systems":
+                    options.splitSystems = true;
+                    break;
+                case "-from":
+                    options.from = parseTime(getValue(args, ++i, arg), arg);
+                    break;
+                case "-to":
+                    options.to = parseTime(getValue(args, ++i, arg), arg);
+                    break;
+                case "-cache":
+                    options.cacheDir = new File(getValue(args, ++i, arg));
+                    break;
+                case "-cache_mb":
+                    options.cacheBytes = parsePositive(getValue(args, ++i, arg), arg) * 1024L * 1024L;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+            }
+        }
+        if (options.input == null) {
+            throw new IllegalArgumentException("Не задан параметр -input");
+        }
+        if (options.outputDir == null) {
+            throw new IllegalArgumentException("Не задан параметр -output");
+        }
+        if (options.from != null && options.to != null && !options.from.isBefore(options.to)) {
+            throw new IllegalArgumentException("Параметр -from должен быть раньше -to");
+        }
+        return options;
+    }
+
+    private static LocalDateTime parseTime(String value, String name) {
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Параметр " + name + " задается в виде 2020-01-01T00:00:00: " + value);
+        }
+    }
+
+    static List<String> splitSystems(String value) {
+        List<String> systems = new ArrayList<>();
+        for (char c : value.replace(",", "").toCharArray()) {
+            systems.add(String.valueOf(Character.toUpperCase(c)));
+        }
+        return systems;
+    }
+
+    static String getValue(String[] args, int index, String name) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Не задано значение параметра " + name);
+        }
+        return args[index];
+    }
+
+    static int parsePositive(String value, String name) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result > 0) {
+                return result;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Параметр " + name + " должен быть положительным числом: " + value);
+    }
+
+    private static void printUsage() {
+        System.err.println("Использование: " + BATCH_FLAG + " -input <папка|маска> -output <папка>"
+                + " [-obs_types C1,L1] [-satsys GRE] [-threads N] [-windows N] [-keep_tab] [-cache <папка>] [-cache_mb N]"
+                + " [-io_threads N] [-gzip] [-native] [-split_systems] [-max_processes N]"
+                + " [-from 2020-01-01T00:00:00] [-to 2020-01-01T01:00:00]");
+    }
+}
@@ -0,0 +1,39 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+// Reuses direct buffers of one size; at most maxIdle released buffers are kept
+public class ByteBufferPool {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final int bufferSize;
+    private final int maxIdle;
+    private final ArrayDeque<ByteBuffer> idle = new ArrayDeque<>();
+
+    public ByteBufferPool(int bufferSize, int maxIdle) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        this.maxIdle = maxIdle;
+    }
+
+    public synchronized ByteBuffer acquire() {
+        ByteBuffer buffer = idle.pollFirst();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        return buffer;
+    }
+
+    public synchronized void release(ByteBuffer buffer) {
+        buffer.clear();
+        if (idle.size() < maxIdle) {
+            idle.addFirst(buffer);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,79 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Concatenates the tab outputs of time-sliced gfzrnx runs in window order.
+// Observations outside a chunk's own window are dropped, so an epoch on a
+// window boundary is taken exactly once, and a header is repeated only when
+// it differs from the last one passed on for its system.
+public class ChunkMerger implements TabLineSource, Closeable {
+
+    private final List<File> chunks;
+    private final List<EpochWindow> windows;
+    private final Map<String, String> lastHeaders = new HashMap<>();
+    private final TabLineCursor cursor = new TabLineCursor();
+    private MappedTabReader reader;
+    private EpochWindow window;
+    private int nextChunk;
+
+    public ChunkMerger(List<File> chunks, List<EpochWindow> windows) {
+        if (chunks.size() != windows.size()) {
+            throw new IllegalArgumentException("Chunk and window counts differ");
+        }
+        this.chunks = chunks;
+        this.windows = windows;
+    }
+
+    @Nullable
+    @Override
+    public CharSequence readLine() throws IOException {
+        while (true) {
+            if (reader == null) {
+                if (nextChunk == chunks.size()) {
+                    return null;
+                }
+                reader = MappedTabReader.buffered(chunks.get(nextChunk), 0);
+                window = windows.get(nextChunk);
+                nextChunk++;
+            }
+            CharSequence line = reader.readLine();
+            if (line == null) {
+                reader.close();
+                reader = null;
+                continue;
+            }
+            cursor.reset(line);
+            if (line.length() > 0 && line.charAt(0) == '#') {
+                if (cursor.fieldCount() < 2) {
+                    return line;
+                }
+                String system = cursor.field(1);
+                String header = line.toString();
+                if (header.equals(lastHeaders.get(system))) {
+                    continue;
+                }
+                lastHeaders.put(system, header);
+                return line;
+            }
+            if (cursor.fieldCount() < 5) {
+                throw new RuntimeException("Строка неправильного формата: " + line);
+            }
+            if (window.contains(TabFormat.getEpochSecond(cursor))) {
+                return line;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Lines are collected into chunks of whole epochs that are counted in parallel
+// on a ForkJoinPool. Results are written in chunk order, so the output is the
+// same as counting the file sequentially. In the compressed mode every chunk is
+// also compressed by its task into a gzip member of componentCounter.txt.gz.
+public class ComponentCounter implements TabLineConsumer {
+
+    public static final String COMPONENT_FILE_NAME = "componentCounter.txt";
+
+    static final int CHUNK_LINES = 8192;
+
+    private final OutputStream output;
+    private final boolean compress;
+    private final ForkJoinPool pool;
+    private final int maxPendingChunks;
+    @Nullable
+    private final Collection<String> systems;
+    private final boolean[] selectedConstellations = new boolean[Constellation.values().length];
+    @Nullable
+    private final Collection<String> obsTypes;
+    // Counted columns per system when obsTypes narrows its header, see getCountedColumns;
+    // replaced, never modified, as chunks share it
+    private Map<String, int[]> projections = Map.of();
+    private final Deque<ForkJoinTask<byte[]>> pendingChunks = new ArrayDeque<>();
+    private StringBuilder chunkText = new StringBuilder();
+    private int[] lineEnds = new int[CHUNK_LINES];
+    private int chunkLines;
+    private String currentDate;
+    private String currentTime;
+    private final boolean resumed;
+    private final String fileName;
+    // Per system in the live mode, Constellation ordinals in the arrays and other systems in the maps
+    @Nullable
+    private OutputEpochs outputEpochs;
+    private final OutputEpochs.Epoch[] resumeEpochs = new OutputEpochs.Epoch[Constellation.values().length];
+    private final OutputEpochs.Epoch[] lastEpochs = new OutputEpochs.Epoch[Constellation.values().length];
+    private final Map<String, OutputEpochs.Epoch> otherLastEpochs = new HashMap<>();
+    @Nullable
+    private OutputEpochs.Epoch currentEpoch;
+    @Nullable
+    private ConversionMetrics metrics;
+    private long epochs;
+
+    public ComponentCounter(File outputDir) throws IOException {
+        this(outputDir, null, null, ForkJoinPool.commonPool());
+    }
+
+    // Lines of systems outside `systems` are skipped; obsTypes limits counting
+    // to the projected columns, see ProjectionPlan
+    public ComponentCounter(File outputDir, @Nullable Collection<String> systems, @Nullable Collection<String> obsTypes,
+                            ForkJoinPool pool) throws IOException {
+        this(outputDir, systems, obsTypes, pool, false);
+    }
+
+    public ComponentCounter(File outputDir, @Nullable Collection<String> systems, @Nullable Collection<String> obsTypes,
+                            ForkJoinPool pool, boolean compress) throws IOException {
+        this(outputDir, systems, obsTypes, pool, compress, false);
+    }
+
+    // With append the counts continue a counter file of an earlier run, its first
+    // observation is then counted like any other
+    public ComponentCounter(File outputDir, @Nullable Collection<String> systems, @Nullable Collection<String> obsTypes,
+                            ForkJoinPool pool, boolean compress, boolean append) throws IOException {
+        this.compress = compress;
+        File file = getFile(outputDir, compress);
+        this.fileName = file.getName();
+        this.resumed = append && file.length() > 0;
+        this.output = new BufferedOutputStream(new FileOutputStream(file, append));
+        this.systems = systems;
+        for (Constellation constellation : Constellation.values()) {
+            selectedConstellations[constellation.ordinal()] = systems == null || systems.contains(constellation.getLetter());
+        }
+        this.obsTypes = obsTypes;
+        this.pool = pool;
+        this.maxPendingChunks = Math.max(2, pool.getParallelism() * 2);
+    }
+
+    // Chunk counting time goes to the COUNTING stage, epochs are added on finish
+    public ComponentCounter setMetrics(@Nullable ConversionMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    // Skips rows of a system up to the epoch last counted for it and puts the new epochs on finish
+    public ComponentCounter setOutputEpochs(@Nullable OutputEpochs outputEpochs) {
+        this.outputEpochs = outputEpochs;
+        if (outputEpochs != null){
+            for (Constellation constellation : Constellation.values()) {
+                resumeEpochs[constellation.ordinal()] = outputEpochs.get(getOutput(constellation.getLetter()));
+            }
+        }
+        return this;
+    }
+
+    private String getOutput(String system){
+        return OutputEpochs.getCounterOutput(fileName, system);
+    }
+
+    @Override
+    public void onHeader(TabLineCursor header) {
+        if (obsTypes == null){
+            return;
+        }
+        Map<String, int[]> updated = new HashMap<>(projections);
+        int[] columns = getCountedColumns(header, ProjectionPlan.fromHeader(header.line().toString(), obsTypes));
+        if (columns == null){
+            updated.remove(TabFormat.getSystem(header));
+        } else {
+            updated.put(TabFormat.getSystem(header), columns);
+        }
+        projections = updated;
+    }
+
+    // Null when the header holds only selected types, as gfzrnx run with -obs_types writes it;
+    // every field from index 5 is counted then. Otherwise the fields from index 5 before the
+    // data, the PRN of the P layout, stay in front of the selected columns.
+    @Nullable
+    static int[] getCountedColumns(TabLineCursor header, ProjectionPlan plan){
+        int[] selected = plan.getColumns();
+        int dataStart = plan.getDataStartIndex();
+        if (selected == null || selected.length == header.fieldCount() - dataStart){
+            return null;
+        }
+        int leading = Math.max(0, dataStart - 5);
+        int[] columns = new int[leading + selected.length];
+        for (int i = 0; i < leading; i++) {
+            columns[i] = 5 + i;
+        }
+        System.arraycopy(selected, 0, columns, leading, selected.length);
+        return columns;
+    }
+
+    @Override
+    public void onObservation(TabLineCursor line) throws IOException {
+        if (line.fieldCount() < 5){
+            throw new RuntimeException("Строка неправильного формата: "+ line.line());
+        }
+        if (!isSelected(line)){
+            return;
+        }
+        if (outputEpochs != null && !checkEpoch(line)){
+            return;
+        }
+        if (currentDate == null && !resumed){
+            // The first observation only opens the epoch and is not counted, as before
+            currentDate = line.field(TabFormat.DATE_INDEX);
+            currentTime = line.field(TabFormat.TIME_INDEX);
+            epochs++;
+            return;
+        }
+        if (currentDate == null || !line.fieldEquals(TabFormat.DATE_INDEX, currentDate)
+                || !line.fieldEquals(TabFormat.TIME_INDEX, currentTime)){
+            if (chunkLines >= CHUNK_LINES){
+                submitChunk();
+            }
+            currentDate = line.field(TabFormat.DATE_INDEX);
+            currentTime = line.field(TabFormat.TIME_INDEX);
+            epochs++;
+        }
+        if (chunkLines == lineEnds.length){
+            lineEnds = Arrays.copyOf(lineEnds, chunkLines * 2);
+        }
+        chunkText.append(line.text(), line.lineStart(), line.lineEnd());
+        lineEnds[chunkLines++] = chunkText.length();
+    }
+
+    // False for rows already counted, otherwise records the epoch for the row's system
+    private boolean checkEpoch(TabLineCursor line){
+        Constellation constellation = Constellation.ofField(line, 1);
+        OutputEpochs.Epoch resume = constellation != null
+                ? resumeEpochs[constellation.ordinal()] : outputEpochs.get(getOutput(line.field(1)));
+        if (!outputEpochs.isNew(resume, line)){
+            return false;
+        }
+        if (currentEpoch == null || !currentEpoch.matches(line)){
+            currentEpoch = OutputEpochs.Epoch.of(line);
+        }
+        if (constellation != null){
+            lastEpochs[constellation.ordinal()] = currentEpoch;
+        } else {
+            otherLastEpochs.put(line.field(1), currentEpoch);
+        }
+        return true;
+    }
+
+    private boolean isSelected(TabLineCursor line){
+        if (systems == null){
+            return true;
+        }
+        Constellation constellation = Constellation.ofField(line, 1);
+        if (constellation != null){
+            return selectedConstellations[constellation.ordinal()];
+        }
+        return systems.contains(line.field(1));
+    }
+
+    private void submitChunk() throws IOException {
+        if (chunkLines == 0){
+            return;
+        }
+        CharSequence text = chunkText;
+        int[] ends = lineEnds;
+        int lines = chunkLines;
+        Map<String, int[]> chunkProjections = projections;
+        ConversionMetrics chunkMetrics = metrics;
+        boolean compressChunk = compress;
+        pendingChunks.addLast(pool.submit(() -> {
+            ConversionMetrics.Span span = chunkMetrics == null ? null : chunkMetrics.start(ConversionMetrics.Stage.COUNTING);
+            byte[] counted = countChunk(text, ends, lines, chunkProjections).getBytes();
+            if (span != null) {
+                span.stop(text.length(), lines);
+            }
+            return compressChunk ? GzipBlockCompressor.compressBlock(counted, 0, counted.length) : counted;
+        }));
+        chunkText = new StringBuilder(text.length());
+        lineEnds = new int[Math.max(CHUNK_LINES, lines)];
+        chunkLines = 0;
+        while (pendingChunks.size() > maxPendingChunks){
+            output.write(pendingChunks.removeFirst().join());
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        submitChunk();
+        while (!pendingChunks.isEmpty()){
+            output.write(pendingChunks.removeFirst().join());
+        }
+        if (outputEpochs != null){
+            for (Constellation constellation : Constellation.values()) {
+                if (lastEpochs[constellation.ordinal()] != null){
+                    outputEpochs.put(getOutput(constellation.getLetter()), lastEpochs[constellation.ordinal()]);
+                }
+            }
+            otherLastEpochs.forEach((system, epoch) -> outputEpochs.put(getOutput(system), epoch));
+        }
+        if (metrics != null){
+            metrics.addEpochs(epochs);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ForkJoinTask<byte[]> chunk : pendingChunks) {
+            chunk.cancel(false);
+        }
+        pendingChunks.clear();
+        output.close();
+    }
+
+    // componentCounter.txt, or componentCounter.txt.gz in the compressed mode
+    public static File getFile(File outputDir, boolean compressed) {
+        return new File(outputDir, compressed ? COMPONENT_FILE_NAME + GzipBlockCompressor.SUFFIX : COMPONENT_FILE_NAME);
+    }
+
+    static String countChunk(CharSequence text, int[] lineEnds, int lines, Map<String, int[]> projections){
+        TabLineCursor cursor = new TabLineCursor();
+        EpochCounter counter = new EpochCounter(projections);
+        StringBuilder output = new StringBuilder();
+        int start = 0;
+        for (int i = 0; i < lines; i++) {
+            cursor.reset(text, start, lineEnds[i]);
+            counter.count(cursor, output);
+            start = lineEnds[i];
+        }
+        counter.processInfoBlock(output);
+        return output.toString();
+    }
+
+    // Counts of one epoch block in arrays indexed by system id: Constellation ordinals
+    // first, then systems outside the enum in order of appearance.
+    private static class EpochCounter {
+        private final Map<String, Integer> otherSystemIds = new HashMap<>();
+        private final Map<String, int[]> projections;
+        private String[] systemNames;
+        private int[] systemHashes;
+        // Counted columns per system, null counts every column from index 5
+        private int[][] systemColumns;
+        private int[][] counts;
+        // Systems of the current block in order of first appearance
+        private int[] blockSystems;
+        private int blockSize;
+        private boolean[] inBlock;
+        private String currentDate;
+        private String currentTime;
+        private int lastSystem = -1;
+        private int[] lastCounts;
+        private int[] lastColumns;
+
+        EpochCounter(Map<String, int[]> projections) {
+            this.projections = projections;
+            Constellation[] constellations = Constellation.values();
+            systemNames = new String[constellations.length];
+            for (Constellation constellation : constellations) {
+                systemNames[constellation.ordinal()] = constellation.getLetter();
+            }
+            systemHashes = new int[systemNames.length];
+            systemColumns = new int[systemNames.length][];
+            for (int i = 0; i < systemNames.length; i++) {
+                systemHashes[i] = spread(systemNames[i].hashCode());
+                systemColumns[i] = projections.get(systemNames[i]);
+            }
+            counts = new int[systemNames.length][];
+            blockSystems = new int[systemNames.length];
+            inBlock = new boolean[systemNames.length];
+        }
+
+        void count(TabLineCursor line, StringBuilder output){
+            if (currentDate == null || !line.fieldEquals(TabFormat.DATE_INDEX, currentDate)
+                    || !line.fieldEquals(TabFormat.TIME_INDEX, currentTime)){
+                processInfoBlock(output);
+                currentDate = line.field(TabFormat.DATE_INDEX);
+                currentTime = line.field(TabFormat.TIME_INDEX);
+            }
+            if (lastSystem == -1 || !line.fieldEquals(1, systemNames[lastSystem])){
+                lastSystem = getSystemId(line);
+                lastColumns = systemColumns[lastSystem];
+                if (!inBlock[lastSystem]){
+                    int length = lastColumns == null ? line.fieldCount() - 4 : lastColumns.length + 1;
+                    int[] systemCounts = counts[lastSystem];
+                    if (systemCounts == null || systemCounts.length != length){
+                        counts[lastSystem] = new int[length];
+                    } else {
+                        Arrays.fill(systemCounts, 0);
+                    }
+                    inBlock[lastSystem] = true;
+                    blockSystems[blockSize++] = lastSystem;
+                }
+                lastCounts = counts[lastSystem];
+            }
+            int[] countArray = lastCounts;
+            countArray[0]++;
+            int[] columns = lastColumns;
+            if (columns == null){
+                for (int i = 5; i < line.fieldCount(); i++) {
+                    if (!line.isNull(i)) {
+                        countArray[i-4]++;
+                    }
+                }
+                return;
+            }
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i] < line.fieldCount() && !line.isNull(columns[i])) {
+                    countArray[i+1]++;
+                }
+            }
+        }
+
+        private int getSystemId(TabLineCursor line){
+            Constellation constellation = Constellation.ofField(line, 1);
+            if (constellation != null){
+                return constellation.ordinal();
+            }
+            String system = line.field(1);
+            Integer id = otherSystemIds.get(system);
+            if (id != null){
+                return id;
+            }
+            id = systemNames.length;
+            otherSystemIds.put(system, id);
+            systemNames = Arrays.copyOf(systemNames, id + 1);
+            systemHashes = Arrays.copyOf(systemHashes, id + 1);
+            systemColumns = Arrays.copyOf(systemColumns, id + 1);
+            counts = Arrays.copyOf(counts, id + 1);
+            blockSystems = Arrays.copyOf(blockSystems, id + 1);
+            inBlock = Arrays.copyOf(inBlock, id + 1);
+            systemNames[id] = system;
+            systemHashes[id] = spread(system.hashCode());
+            systemColumns[id] = projections.get(system);
+            return id;
+        }
+
+        void processInfoBlock(StringBuilder output){
+            sortInMapOrder();
+            for (int i = 0; i < blockSize; i++) {
+                int system = blockSystems[i];
+                appendFinalString(currentDate + " " + currentTime, systemNames[system], counts[system], output);
+                output.append(System.lineSeparator());
+                inBlock[system] = false;
+            }
+            blockSize = 0;
+            lastSystem = -1;
+            lastCounts = null;
+            lastColumns = null;
+        }
+
+        // Blocks used to be grouped into a HashMap filled with computeIfAbsent, which
+        // iterates by bucket and puts later keys first within a bucket. Keep that order.
+        private void sortInMapOrder(){
+            int tableSize = 16;
+            while (blockSize > tableSize * 3 / 4) {
+                tableSize *= 2;
+            }
+            int mask = tableSize - 1;
+            for (int i = 1; i < blockSize; i++) {
+                int system = blockSystems[i];
+                int bucket = systemHashes[system] & mask;
+                int j = i - 1;
+                while (j >= 0 && (systemHashes[blockSystems[j]] & mask) >= bucket) {
+                    blockSystems[j + 1] = blockSystems[j];
+                    j--;
+                }
+                blockSystems[j + 1] = system;
+            }
+        }
+
+        private static int spread(int hash){
+            return hash ^ (hash >>> 16);
+        }
+
+        private static void appendFinalString(String dateTime, String system, int[] countArray, StringBuilder s){
+            s.append(system).append(" ").append(dateTime).append(" ");
+            for (int i = 0; i < countArray.length; i++) {
+               s.append(countArray[i]).append(" ");
+            }
+        }
+    }
+}
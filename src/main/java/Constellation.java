@@ -0,0 +1,104 @@
+import org.jetbrains.annotations.Nullable;
+
+// Satellite systems of the tab output. Each system owns PRN_SLOTS consecutive
+// slots of a dense satellite index, so per-satellite state lives in plain arrays.
+public enum Constellation {
+    GPS('G', "GPS"),
+    GLONASS('R', "GLONASS"),
+    BEIDOU('C', "BeiDou"),
+    GALILEO('E', "Galileo"),
+    IRNSS('I', "IRNSS"),
+    QZSS('J', "QZSS"),
+    SBAS('S', "SBAS");
+
+    // PRN 01..99, slot 0 of each system is unused
+    public static final int PRN_SLOTS = 100;
+    public static final int SATELLITE_SLOTS = values().length * PRN_SLOTS;
+
+    private static final Constellation[] VALUES = values();
+    private static final Constellation[] BY_CODE = new Constellation[128];
+
+    static {
+        for (Constellation constellation : VALUES) {
+            BY_CODE[constellation.code] = constellation;
+        }
+    }
+
+    private final char code;
+    private final String letter;
+    private final String displayName;
+
+    Constellation(char code, String displayName) {
+        this.code = code;
+        this.letter = String.valueOf(code);
+        this.displayName = displayName;
+    }
+
+    public char getCode() {
+        return code;
+    }
+
+    public String getLetter() {
+        return letter;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public int getSlot(int prn) {
+        return ordinal() * PRN_SLOTS + prn;
+    }
+
+    public static Constellation ofSlot(int slot) {
+        return VALUES[slot / PRN_SLOTS];
+    }
+
+    public static int prnOfSlot(int slot) {
+        return slot % PRN_SLOTS;
+    }
+
+    @Nullable
+    public static Constellation ofCode(char code) {
+        return code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    @Nullable
+    public static Constellation ofDisplayName(String displayName) {
+        for (Constellation constellation : VALUES) {
+            if (constellation.displayName.equals(displayName)) {
+                return constellation;
+            }
+        }
+        return null;
+    }
+
+    // System of a one letter field such as "G", null for anything else
+    @Nullable
+    public static Constellation ofField(TabLineCursor line, int field) {
+        if (line.fieldLength(field) != 1) {
+            return null;
+        }
+        return ofCode(line.charAt(field, 0));
+    }
+
+    // Slot of a satellite field such as "G01" of the given system, -1 if the
+    // field is not a letter followed by a two digit PRN
+    public static int slotOfField(TabLineCursor line, int field, Constellation constellation) {
+        if (line.fieldLength(field) != 3 || line.charAt(field, 0) != constellation.code) {
+            return -1;
+        }
+        char tens = line.charAt(field, 1);
+        char ones = line.charAt(field, 2);
+        if (tens < '0' || tens > '9' || ones < '0' || ones > '9') {
+            return -1;
+        }
+        int prn = (tens - '0') * 10 + (ones - '0');
+        return prn == 0 ? -1 : constellation.getSlot(prn);
+    }
+
+    public static String satelliteName(int slot) {
+        int prn = prnOfSlot(slot);
+        return ofSlot(slot).letter + (prn < 10 ? "0" : "") + prn;
+    }
+}
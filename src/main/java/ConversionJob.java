@@ -0,0 +1,421 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+// One gfzrnx conversion whose tab output is piped into the grouping and counting stages.
+// A kept tab file (*.tab) can be used as input to regroup it without running gfzrnx again.
+// With an ObservationCache gfzrnx converts all systems once, the selection is applied here.
+// A cancelled job kills gfzrnx, stops the Java stages and removes the files it has written.
+// With the native reader RINEX observation files are read in process, without gfzrnx.
+// In the append mode the outputs of earlier jobs are continued, see LiveRunner.
+public class ConversionJob {
+
+    public static final String TAB_SUFFIX = ".tab";
+
+    private final File inputFile;
+    private final File outputDir;
+    @Nullable
+    private final String executable;
+    @Nullable
+    private final Collection<String> systems;
+    @Nullable
+    private final File tabFile;
+    @Nullable
+    private Collection<String> obsTypes;
+    @Nullable
+    private Collection<String> gfzrnxObsTypes;
+    @Nullable
+    private ObservationCache cache;
+    private int timeWindows = 1;
+    private int ioThreads = GroupedFileWriter.DEFAULT_IO_THREADS;
+    private boolean compressOutput;
+    private boolean nativeReader;
+    private boolean splitSystems;
+    // Epoch seconds of the time range, [from, to)
+    private long rangeFrom = Long.MIN_VALUE;
+    private long rangeTo = Long.MAX_VALUE;
+    private boolean append;
+    @Nullable
+    private OutputEpochs outputEpochs;
+    private long tabOffset;
+    private List<String> tabHeaders = List.of();
+    private final ConversionMonitor monitor = new ConversionMonitor();
+    private final ConversionMetrics metrics;
+    private boolean createdOutputDir;
+    @Nullable
+    private SatelliteGrouper grouper;
+
+    // executable may be null for tab file inputs
+    public ConversionJob(File inputFile, File outputDir, @Nullable String executable, @Nullable Collection<String> systems,
+                         @Nullable File tabFile) {
+        this.inputFile = inputFile;
+        this.outputDir = outputDir;
+        this.executable = executable;
+        this.systems = systems;
+        this.tabFile = tabFile;
+        this.metrics = new ConversionMetrics(inputFile.getPath());
+    }
+
+    // With more than one window the input is converted by concurrent gfzrnx processes, one per epoch window
+    public ConversionJob setTimeWindows(int timeWindows) {
+        if (timeWindows < 1) {
+            throw new IllegalArgumentException("Window count must be positive: " + timeWindows);
+        }
+        this.timeWindows = timeWindows;
+        return this;
+    }
+
+    // Observation types kept in the grouped and counter files, null keeps all columns
+    public ConversionJob setObsTypes(@Nullable Collection<String> obsTypes) {
+        this.obsTypes = obsTypes;
+        return this;
+    }
+
+    // Types passed to gfzrnx -obs_types when they differ from setObsTypes, e.g. every type
+    // offered in the GUI while all columns are kept
+    public ConversionJob setGfzrnxObsTypes(@Nullable Collection<String> gfzrnxObsTypes) {
+        this.gfzrnxObsTypes = gfzrnxObsTypes;
+        return this;
+    }
+
+    @Nullable
+    private Collection<String> getGfzrnxObsTypes() {
+        return gfzrnxObsTypes != null ? gfzrnxObsTypes : obsTypes;
+    }
+
+    // Threads writing the per-satellite files
+    public ConversionJob setIoThreads(int ioThreads) {
+        if (ioThreads < 1) {
+            throw new IllegalArgumentException("I/O thread count must be positive: " + ioThreads);
+        }
+        this.ioThreads = ioThreads;
+        return this;
+    }
+
+    // Grouped files and the counter file as gzip (*.gz), compressed in blocks on the common pool
+    public ConversionJob setCompressOutput(boolean compressOutput) {
+        this.compressOutput = compressOutput;
+        return this;
+    }
+
+    // Reads RINEX 2/3 observation files with RinexObservationReader instead of gfzrnx.
+    // The cache and time windows are not used then, reading is cheaper than both.
+    public ConversionJob setNativeReader(boolean nativeReader) {
+        this.nativeReader = nativeReader;
+        return this;
+    }
+
+    // Runs one gfzrnx process per satellite system concurrently, see SystemSplitRunner.
+    // Takes the place of time windows, the two are not combined.
+    public ConversionJob setSplitSystems(boolean splitSystems) {
+        this.splitSystems = splitSystems;
+        return this;
+    }
+
+    // Keeps only epochs in [from, to) of a tab file input, null leaves that end open.
+    // Kept gfzrnx output has an EpochIndex, so only about the range itself is read.
+    public ConversionJob setTimeRange(@Nullable LocalDateTime from, @Nullable LocalDateTime to) {
+        rangeFrom = from == null ? Long.MIN_VALUE : from.toEpochSecond(ZoneOffset.UTC);
+        rangeTo = to == null ? Long.MAX_VALUE : to.toEpochSecond(ZoneOffset.UTC);
+        return this;
+    }
+
+    // Appends to the grouped files and the counter file in the output folder instead of
+    // rewriting them. Outputs are left in place when the job fails or is cancelled.
+    public ConversionJob setAppend(boolean append) {
+        this.append = append;
+        return this;
+    }
+
+    // Skips the rows of each grouped file and counter system up to the last epoch already
+    // written to it and records the new ones; null keeps all rows
+    public ConversionJob setOutputEpochs(@Nullable OutputEpochs outputEpochs) {
+        this.outputEpochs = outputEpochs;
+        return this;
+    }
+
+    // Reads a tab file input from a line start at offset, after the header lines it had
+    // before; for a tab file that has grown since it was processed. Not combined with a time range.
+    // Rows of the resume epochs should be kept then, see OutputEpochs.setKeepResumeEpoch.
+    public ConversionJob setTabOffset(long offset, List<String> headers) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative: " + offset);
+        }
+        this.tabOffset = offset;
+        this.tabHeaders = headers;
+        return this;
+    }
+
+    public ConversionJob setCache(@Nullable ObservationCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    public TabFileProcessor createProcessor() throws IOException {
+        createdOutputDir = outputDir.mkdirs();
+        HeaderCollector headers = new HeaderCollector();
+        GzipBlockCompressor compressor = compressOutput ? new GzipBlockCompressor(ForkJoinPool.commonPool()) : null;
+        // The native reader keeps every type of the file, the gfzrnx selection is applied here then
+        Collection<String> projected = nativeReader && !isTabFile(inputFile) ? getGfzrnxObsTypes() : obsTypes;
+        grouper = new SatelliteGrouper(outputDir, headers, getFormat(inputFile), systems, projected,
+                WriterPool.DEFAULT_CAPACITY, ioThreads).setMetrics(metrics).setCompressor(compressor)
+                .setAppend(append).setOutputEpochs(outputEpochs);
+        TabFileProcessor processor = new TabFileProcessor()
+                .setMonitor(monitor)
+                .setMetrics(metrics)
+                .addConsumer(headers)
+                .addConsumer(grouper, ConversionMetrics.Stage.GROUPING)
+                .addConsumer(new ComponentCounter(outputDir, systems, projected, ForkJoinPool.commonPool(), compressOutput, append)
+                        .setMetrics(metrics).setOutputEpochs(outputEpochs), ConversionMetrics.Stage.COUNTING);
+        if (tabFile != null) {
+            processor.addConsumer(new TabFileWriter(tabFile), ConversionMetrics.Stage.WRITING);
+        }
+        return processor;
+    }
+
+    public int run() throws IOException, InterruptedException {
+        return run(createProcessor());
+    }
+
+    // Throws CancellationException once the outputs of a cancelled job are removed.
+    // Stage timings are written to ConversionMetrics.FILE_NAME in the output folder.
+    public int run(TabFileProcessor processor) throws IOException, InterruptedException {
+        processor.setMonitor(monitor).setMetrics(metrics);
+        try {
+            int exitCode = runStages(processor);
+            monitor.checkCancelled();
+            metrics.finish(exitCode);
+            metrics.writeJson(new File(outputDir, ConversionMetrics.FILE_NAME));
+            monitor.setStage(ConversionMonitor.Stage.DONE);
+            return exitCode;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            if (!monitor.isCancelled()) {
+                throw e;
+            }
+            monitor.setStage(ConversionMonitor.Stage.CANCELLING);
+            CancellationException cancelled = new CancellationException("Обработка отменена");
+            try {
+                processor.close();
+                if (!append) {
+                    removeOutputs();
+                }
+            } catch (IOException removeFailure) {
+                cancelled.addSuppressed(removeFailure);
+            }
+            throw cancelled;
+        }
+    }
+
+    // Kills the gfzrnx processes of the job, run() then stops and cleans up
+    public void cancel() {
+        monitor.cancel();
+    }
+
+    public ConversionMonitor getMonitor() {
+        return monitor;
+    }
+
+    public ConversionMetrics getMetrics() {
+        return metrics;
+    }
+
+    private int runStages(TabFileProcessor processor) throws IOException, InterruptedException {
+        boolean timeRange = rangeFrom != Long.MIN_VALUE || rangeTo != Long.MAX_VALUE;
+        if (isTabFile(inputFile) && timeRange) {
+            monitor.setStage(ConversionMonitor.Stage.PROCESSING, ConversionMonitor.UNKNOWN_SIZE);
+            try (EpochRangeReader reader = new EpochRangeReader(inputFile, rangeFrom, rangeTo)) {
+                processor.process(reader);
+            }
+            return 0;
+        }
+        if (isTabFile(inputFile) && tabOffset > 0) {
+            monitor.setStage(ConversionMonitor.Stage.PROCESSING, inputFile.length() - tabOffset);
+            try (TabTailReader reader = new TabTailReader(inputFile, tabOffset, tabHeaders)) {
+                processor.process(reader);
+            }
+            return 0;
+        }
+        if (isTabFile(inputFile)) {
+            monitor.setStage(ConversionMonitor.Stage.PROCESSING, inputFile.length());
+            if (append) {
+                // Inputs of the live mode stay in the watched folder, they are not mapped
+                try (MappedTabReader reader = MappedTabReader.buffered(inputFile, 0)) {
+                    processor.process(reader);
+                }
+            } else {
+                processor.process(inputFile);
+            }
+            return 0;
+        }
+        if (timeRange) {
+            throw new IllegalStateException("Интервал времени задается только для файлов *.tab: " + inputFile.getName());
+        }
+        if (nativeReader) {
+            monitor.setStage(ConversionMonitor.Stage.READING_RINEX, ConversionMonitor.UNKNOWN_SIZE);
+            try (RinexObservationReader reader = new RinexObservationReader(inputFile)) {
+                processor.process(reader);
+            }
+            metrics.addRinexBytes(inputFile.length());
+            return 0;
+        }
+        if (cache == null) {
+            return convert(processor, true);
+        }
+        String key = cache.getKey(inputFile, getGfzrnxObsTypes());
+        ObservationCache.Reader cached = cache.open(key);
+        if (cached != null) {
+            monitor.setStage(ConversionMonitor.Stage.READING_CACHE, ConversionMonitor.UNKNOWN_SIZE);
+            try (cached) {
+                processor.process(cached);
+            }
+            return 0;
+        }
+        ObservationCache.EntryWriter entry = cache.create(key, getFormat(inputFile));
+        processor.addConsumer(entry, ConversionMetrics.Stage.CACHING);
+        int exitCode;
+        try {
+            exitCode = convert(processor, false);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            entry.discard();
+            throw e;
+        }
+        if (exitCode == 0) {
+            entry.commit();
+        } else {
+            entry.discard();
+        }
+        return exitCode;
+    }
+
+    private int convert(TabFileProcessor processor, boolean selectSystems) throws IOException, InterruptedException {
+        if (splitSystems) {
+            return new SystemSplitRunner(inputFile, getCommand(false), getSplitSystems(selectSystems), monitor, metrics)
+                    .run(processor);
+        }
+        List<String> command = getCommand(selectSystems);
+        if (timeWindows > 1) {
+            return new TimeSlicedRunner(inputFile, command, timeWindows, outputDir, monitor, metrics).run(processor);
+        }
+        monitor.setStage(ConversionMonitor.Stage.CONVERTING, ConversionMonitor.UNKNOWN_SIZE);
+        ConversionMetrics.Span launch = metrics.start(ConversionMetrics.Stage.PROCESS_LAUNCH);
+        GfzrnxRunner.Execution execution = GfzrnxRunner.start(command);
+        Process process = monitor.register(execution.getProcess());
+        launch.stop(0, 0);
+        // gfzrnx runs while its output is processed, the span covers both
+        ConversionMetrics.Span conversion = metrics.start(ConversionMetrics.Stage.GFZRNX);
+        try {
+            RinexInput.Feeder feeder = RinexInput.isEncoded(inputFile) ? RinexInput.Feeder.start(inputFile, process) : null;
+            processor.process(process.getInputStream());
+            int exitCode = execution.waitFor();
+            long rinexBytes = inputFile.length();
+            if (feeder != null) {
+                feeder.await();
+                rinexBytes = feeder.getBytes();
+            }
+            conversion.stop(rinexBytes, 0);
+            metrics.addRinexBytes(rinexBytes);
+            return exitCode;
+        } finally {
+            monitor.unregister(process);
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    // Selected systems, or all systems of the file for cache entries and runs without a selection.
+    // RINEX 2 mixed headers do not list their systems, every known system is tried then.
+    private List<String> getSplitSystems(boolean selectSystems) throws IOException {
+        if (systems != null && selectSystems) {
+            return new ArrayList<>(systems);
+        }
+        List<String> headerSystems = RinexHeader.read(inputFile).getSystems();
+        if (!headerSystems.isEmpty()) {
+            return headerSystems;
+        }
+        List<String> allSystems = new ArrayList<>();
+        for (Constellation constellation : Constellation.values()) {
+            allSystems.add(constellation.getLetter());
+        }
+        return allSystems;
+    }
+
+    // The systems option is left out for cache entries, which hold every system
+    private List<String> getCommand(boolean selectSystems) {
+        if (executable == null) {
+            throw new IllegalStateException("EXE-файл программы GFZRNX не найден");
+        }
+        List<String> options = new ArrayList<>();
+        Collection<String> types = getGfzrnxObsTypes();
+        if (types != null) {
+            options.addAll(GfzrnxRunner.getOption(GfzrnxRunner.TYPES_PREFIX, new ArrayList<>(types), ','));
+        }
+        if (systems != null && selectSystems) {
+            options.addAll(GfzrnxRunner.getOption(GfzrnxRunner.SAT_SYS_PREFIX, new ArrayList<>(systems), null));
+        }
+        // Encoded inputs are decoded into the standard input of gfzrnx
+        String inputPath = RinexInput.isEncoded(inputFile) ? null : inputFile.getAbsolutePath();
+        return GfzrnxRunner.getCommand(executable, inputPath, options);
+    }
+
+    // Only what this job created or truncated; metrics are written after the last cancellation check
+    private void removeOutputs() throws IOException {
+        if (grouper != null) {
+            grouper.removeOutputs();
+        }
+        Files.deleteIfExists(ComponentCounter.getFile(outputDir, compressOutput).toPath());
+        if (tabFile != null) {
+            Files.deleteIfExists(tabFile.toPath());
+            Files.deleteIfExists(EpochIndex.getFile(tabFile).toPath());
+        }
+        if (createdOutputDir) {
+            // Only succeeds if nothing else was put there meanwhile
+            outputDir.delete();
+        }
+    }
+
+    static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    public static boolean isTabFile(File file) {
+        return file.getName().toLowerCase().endsWith(TAB_SUFFIX);
+    }
+
+    // Format of a RINEX input, or of the input a kept tab file was converted from.
+    // Compressed and Hatanaka inputs have the format of the RINEX file they hold.
+    public static FormatType getFormat(File file) {
+        String name = file.getName();
+        if (isTabFile(file)) {
+            name = name.substring(0, name.length() - TAB_SUFFIX.length());
+        }
+        return FormatType.getFormat(RinexInput.getDecodedName(name));
+    }
+
+    public File getInputFile() {
+        return inputFile;
+    }
+
+    public File getOutputDir() {
+        return outputDir;
+    }
+}
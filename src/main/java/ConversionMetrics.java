@@ -0,0 +1,298 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+// Time per stage of one conversion with the line, byte, satellite and epoch counts.
+// Work done in batches (process launch, gfzrnx, chunk counting, writing batches,
+// headers) is measured exactly and also recorded as JFR StageEvents on its thread.
+// Per line work on the reading thread is timed on every SAMPLE_INTERVAL-th line and
+// scaled up, timing every line would cost as much as some of the stages.
+// Durations of a stage are summed over the threads it ran on. Every tab line passes
+// every per line stage, so their throughput is the tab input over their time;
+// gfzrnx throughput is measured on the RINEX input.
+public class ConversionMetrics {
+
+    public static final String FILE_NAME = "metrics.json";
+    public static final int SAMPLE_INTERVAL = 64;
+
+    public enum Stage {
+        PROCESS_LAUNCH("Запуск GFZRNX"),
+        GFZRNX("Работа GFZRNX"),
+        READING("Чтение и разбор строк"),
+        HEADERS("Разбор заголовков"),
+        COUNTING("Подсчет компонент"),
+        GROUPING("Группировка"),
+        WRITING("Запись файлов"),
+        CACHING("Запись в кэш");
+
+        private final String displayName;
+
+        Stage(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    @Name("rinex.Stage")
+    @Label("Conversion Stage")
+    @Category("RINEX")
+    static class StageEvent extends Event {
+        @Label("Stage")
+        String stage;
+        @Label("Input")
+        String input;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Lines")
+        long lines;
+    }
+
+    @Name("rinex.StageSummary")
+    @Label("Conversion Stage Summary")
+    @Category("RINEX")
+    static class StageSummaryEvent extends Event {
+        @Label("Stage")
+        String stage;
+        @Label("Input")
+        String input;
+        @Label("Stage Duration")
+        @Timespan
+        long stageDuration;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Lines")
+        long lines;
+    }
+
+    @Name("rinex.Conversion")
+    @Label("Conversion")
+    @Category("RINEX")
+    static class ConversionEvent extends Event {
+        @Label("Input")
+        String input;
+        @Label("Exit Code")
+        int exitCode;
+        @Label("Lines")
+        long lines;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Satellites")
+        long satellites;
+        @Label("Epochs")
+        long epochs;
+    }
+
+    // A measured piece of one stage, see start()
+    public final class Span {
+        private final Stage stage;
+        private final long start = System.nanoTime();
+        private final StageEvent event = new StageEvent();
+
+        private Span(Stage stage) {
+            this.stage = stage;
+            event.begin();
+        }
+
+        // bytes and lines of this piece go to its JFR event
+        public void stop(long bytes, long lines) {
+            add(stage, System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.stage = stage.name();
+                event.input = input;
+                event.bytes = bytes;
+                event.lines = lines;
+                event.commit();
+            }
+        }
+    }
+
+    private final String input;
+    private final ConversionEvent conversion = new ConversionEvent();
+    private final long start = System.nanoTime();
+    private final LongAdder[] nanos = new LongAdder[Stage.values().length];
+    private final LongAdder inputBytes = new LongAdder();
+    private final LongAdder inputLines = new LongAdder();
+    private final LongAdder rinexBytes = new LongAdder();
+    private final LongAdder satellites = new LongAdder();
+    private final LongAdder epochs = new LongAdder();
+    private volatile long wallNanos = -1;
+    private volatile int exitCode;
+
+    public ConversionMetrics(String input) {
+        this.input = input;
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = new LongAdder();
+        }
+        conversion.begin();
+    }
+
+    public Span start(Stage stage) {
+        return new Span(stage);
+    }
+
+    public void add(Stage stage, long nanos) {
+        this.nanos[stage.ordinal()].add(nanos);
+    }
+
+    // Tab lines read, with their line breaks
+    public void addInput(long bytes, long lines) {
+        inputBytes.add(bytes);
+        inputLines.add(lines);
+    }
+
+    // Size of the RINEX input converted by gfzrnx
+    public void addRinexBytes(long bytes) {
+        rinexBytes.add(bytes);
+    }
+
+    public void addSatellites(long count) {
+        satellites.add(count);
+    }
+
+    public void addEpochs(long count) {
+        epochs.add(count);
+    }
+
+    public long getNanos(Stage stage) {
+        return nanos[stage.ordinal()].sum();
+    }
+
+    public long getBytes(Stage stage) {
+        switch (stage) {
+            case PROCESS_LAUNCH:
+            case HEADERS:
+                return 0;
+            case GFZRNX:
+                return rinexBytes.sum();
+            default:
+                return inputBytes.sum();
+        }
+    }
+
+    public long getLines(Stage stage) {
+        switch (stage) {
+            case PROCESS_LAUNCH:
+            case HEADERS:
+                return 0;
+            default:
+                return inputLines.sum();
+        }
+    }
+
+    public double getMegabytesPerSecond(Stage stage) {
+        long stageNanos = getNanos(stage);
+        return stageNanos > 0 ? getBytes(stage) / 1e6 / (stageNanos / 1e9) : 0;
+    }
+
+    public long getSatellites() {
+        return satellites.sum();
+    }
+
+    public long getEpochs() {
+        return epochs.sum();
+    }
+
+    // Wall time of the whole conversion, known once finish() was called
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    // Ends the job: commits the summary JFR events and freezes the wall time
+    public void finish(int exitCode) {
+        this.exitCode = exitCode;
+        wallNanos = System.nanoTime() - start;
+        for (Stage stage : Stage.values()) {
+            StageSummaryEvent summary = new StageSummaryEvent();
+            if (summary.shouldCommit() && getNanos(stage) > 0) {
+                summary.stage = stage.name();
+                summary.input = input;
+                summary.stageDuration = getNanos(stage);
+                summary.bytes = getBytes(stage);
+                summary.lines = getLines(stage);
+                summary.commit();
+            }
+        }
+        conversion.end();
+        if (conversion.shouldCommit()) {
+            conversion.input = input;
+            conversion.exitCode = exitCode;
+            conversion.lines = getLines(Stage.READING);
+            conversion.bytes = getBytes(Stage.READING);
+            conversion.satellites = getSatellites();
+            conversion.epochs = getEpochs();
+            conversion.commit();
+        }
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"input\": ").append(quote(input)).append(",\n");
+        json.append("  \"exitCode\": ").append(exitCode).append(",\n");
+        json.append("  \"wallSeconds\": ").append(format(wallNanos / 1e9)).append(",\n");
+        json.append("  \"lines\": ").append(getLines(Stage.READING)).append(",\n");
+        json.append("  \"bytes\": ").append(getBytes(Stage.READING)).append(",\n");
+        json.append("  \"satellites\": ").append(getSatellites()).append(",\n");
+        json.append("  \"epochs\": ").append(getEpochs()).append(",\n");
+        json.append("  \"sampleInterval\": ").append(SAMPLE_INTERVAL).append(",\n");
+        json.append("  \"stages\": [");
+        String separator = "\n";
+        for (Stage stage : Stage.values()) {
+            if (getNanos(stage) == 0) {
+                continue;
+            }
+            json.append(separator)
+                    .append("    {\"stage\": ").append(quote(stage.name()))
+                    .append(", \"seconds\": ").append(format(getNanos(stage) / 1e9))
+                    .append(", \"bytes\": ").append(getBytes(stage))
+                    .append(", \"lines\": ").append(getLines(stage))
+                    .append(", \"mbPerSecond\": ").append(format(getMegabytesPerSecond(stage)))
+                    .append("}");
+            separator = ",\n";
+        }
+        json.append("\n  ]\n}\n");
+        return json.toString();
+    }
+
+    public void writeJson(File file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(toJson());
+        }
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.US, "%.3f", value);
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
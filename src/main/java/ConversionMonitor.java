@@ -0,0 +1,117 @@
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Progress and cancellation of one ConversionJob. The worker thread publishes
+// counters every few thousand lines, any other thread may poll them or cancel.
+// Cancelling kills the registered gfzrnx processes; the Java stages stop at
+// their next checkCancelled() call.
+public class ConversionMonitor {
+
+    public enum Stage {
+        STARTING("Запуск"),
+        CONVERTING("Конвертация GFZRNX"),
+        READING_CACHE("Чтение кэша"),
+        READING_RINEX("Разбор RINEX"),
+        PROCESSING("Обработка вывода GFZRNX"),
+        FINISHING("Запись файлов"),
+        CANCELLING("Отмена и удаление файлов"),
+        DONE("Готово");
+
+        private final String displayName;
+
+        Stage(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    public static final long UNKNOWN_SIZE = -1;
+
+    private final Set<Process> processes = ConcurrentHashMap.newKeySet();
+    private final long startNanos = System.nanoTime();
+    private volatile Stage stage = Stage.STARTING;
+    private volatile long totalBytes = UNKNOWN_SIZE;
+    private volatile long bytesRead;
+    private volatile long lines;
+    private volatile boolean cancelled;
+
+    // totalBytes is the size of what the stage reads, UNKNOWN_SIZE for pipes
+    public void setStage(Stage stage, long totalBytes) {
+        this.totalBytes = totalBytes;
+        this.bytesRead = 0;
+        this.stage = stage;
+    }
+
+    public void setStage(Stage stage) {
+        this.stage = stage;
+    }
+
+    // Called by the reading thread only
+    void addProgress(long bytes, long lines) {
+        this.bytesRead += bytes;
+        this.lines += lines;
+    }
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getLines() {
+        return lines;
+    }
+
+    public double getLinesPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? lines / seconds : 0;
+    }
+
+    // Read fraction of the current stage, or -1 if its size is unknown
+    public double getFraction() {
+        long total = totalBytes;
+        if (total <= 0) {
+            return -1;
+        }
+        return Math.min(1.0, (double) bytesRead / total);
+    }
+
+    public Process register(Process process) {
+        processes.add(process);
+        if (cancelled) {
+            process.destroyForcibly();
+        }
+        return process;
+    }
+
+    public void unregister(Process process) {
+        processes.remove(process);
+    }
+
+    public void cancel() {
+        cancelled = true;
+        for (Process process : processes) {
+            process.destroyForcibly();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Обработка отменена");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+// Converts HH:MM[:SS[.fffffffff]] to decimal hours in the layout
+// String.format(Locale.US, "%08.6f", hours) right padded to DEFAULT_COLUMN_PAD.
+// As with LocalTime.getSecond(), the fraction of a second is validated but not used.
+//
+// hours = seconds / 3600, so the value in millionths of an hour is seconds * 2500 / 9.
+// The denominator is odd, the quotient is never exactly halfway between two
+// integers and rounding half up gives the same digits as the Formatter.
+public final class DecimalHourFormatter {
+
+    public static final int WIDTH = TabFormat.DEFAULT_COLUMN_PAD;
+
+    private static final int MICROS_PER_HOUR = 1_000_000;
+
+    private DecimalHourFormatter() {
+    }
+
+    public static void appendPadded(TabLineCursor line, int field, FixedWidthWriter writer) {
+        int micros = toMicroHours(parseSeconds(line.text(), line.fieldStart(field), line.fieldEnd(field)));
+        int hours = micros / MICROS_PER_HOUR;
+        int fraction = micros % MICROS_PER_HOUR;
+        int length = 8;
+        if (hours >= 10) {
+            writer.append((char) ('0' + hours / 10));
+            length++;
+        }
+        writer.append((char) ('0' + hours % 10)).append('.');
+        for (int divisor = MICROS_PER_HOUR / 10; divisor > 0; divisor /= 10) {
+            writer.append((char) ('0' + fraction / divisor % 10));
+        }
+        writer.appendSpaces(WIDTH - length);
+    }
+
+    public static String format(CharSequence time) {
+        StringBuilder builder = new StringBuilder(WIDTH);
+        appendMicroHours(toMicroHours(parseSeconds(time, 0, time.length())), builder);
+        return builder.toString();
+    }
+
+    static int toMicroHours(int secondOfDay) {
+        return (int) ((secondOfDay * 5000L + 9) / 18);
+    }
+
+    private static void appendMicroHours(int micros, StringBuilder builder) {
+        int hours = micros / MICROS_PER_HOUR;
+        int fraction = micros % MICROS_PER_HOUR;
+        builder.append(hours).append('.');
+        for (int divisor = MICROS_PER_HOUR / 10; divisor > 0; divisor /= 10) {
+            builder.append((char) ('0' + fraction / divisor % 10));
+        }
+    }
+
+    static int parseSeconds(CharSequence text, int start, int end) {
+        int length = end - start;
+        if (length < 5 || text.charAt(start + 2) != ':') {
+            throw invalidTime(text, start, end);
+        }
+        int hour = twoDigits(text, start);
+        int minute = twoDigits(text, start + 3);
+        int second = 0;
+        if (length > 5) {
+            if (length < 8 || text.charAt(start + 5) != ':') {
+                throw invalidTime(text, start, end);
+            }
+            second = twoDigits(text, start + 6);
+            if (length > 8) {
+                int fractionDigits = length - 9;
+                if (text.charAt(start + 8) != '.' || fractionDigits > 9) {
+                    throw invalidTime(text, start, end);
+                }
+                for (int i = start + 9; i < end; i++) {
+                    if (!isDigit(text.charAt(i))) {
+                        throw invalidTime(text, start, end);
+                    }
+                }
+            }
+        }
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            throw invalidTime(text, start, end);
+        }
+        return hour * 3600 + minute * 60 + second;
+    }
+
+    private static int twoDigits(CharSequence text, int offset) {
+        char first = text.charAt(offset);
+        char second = text.charAt(offset + 1);
+        if (!isDigit(first) || !isDigit(second)) {
+            return -1;
+        }
+        return (first - '0') * 10 + (second - '0');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static RuntimeException invalidTime(CharSequence text, int start, int end) {
+        return new RuntimeException("Время неправильного формата: " + text.subSequence(start, end));
+    }
+}
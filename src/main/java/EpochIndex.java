@@ -0,0 +1,141 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+// Sparse index of a tab file, written next to it as <name>.tab.idx: the byte offset
+// of every sampleEpochs-th epoch and of every header line. A time range is read by
+// seeking to the last sampled epoch before it, see EpochRangeReader. The index holds
+// the size of the tab file and is ignored once the file has changed.
+//   EPOCH INDEX <tab file size> <sample epochs>
+//   H <offset>
+//   E <epoch second> <offset>
+public class EpochIndex {
+
+    public static final String SUFFIX = ".idx";
+    public static final int DEFAULT_SAMPLE_EPOCHS = 60;
+
+    private static final String TITLE = "EPOCH INDEX";
+
+    private final int sampleEpochs;
+    private long[] headerOffsets = new long[8];
+    private int headerCount;
+    private long[] epochSeconds = new long[256];
+    private long[] epochOffsets = new long[256];
+    private int sampleCount;
+    private long epochCount;
+
+    public EpochIndex(int sampleEpochs) {
+        if (sampleEpochs < 1) {
+            throw new IllegalArgumentException("Sample interval must be positive: " + sampleEpochs);
+        }
+        this.sampleEpochs = sampleEpochs;
+    }
+
+    public static File getFile(File tabFile) {
+        return new File(tabFile.getPath() + SUFFIX);
+    }
+
+    public void addHeader(long offset) {
+        if (headerCount == headerOffsets.length) {
+            headerOffsets = Arrays.copyOf(headerOffsets, headerCount * 2);
+        }
+        headerOffsets[headerCount++] = offset;
+    }
+
+    // Called with the first line of every epoch, in file order
+    public void addEpoch(long epochSecond, long offset) {
+        if (epochCount++ % sampleEpochs == 0) {
+            addSample(epochSecond, offset);
+        }
+    }
+
+    private void addSample(long epochSecond, long offset) {
+        if (sampleCount == epochSeconds.length) {
+            epochSeconds = Arrays.copyOf(epochSeconds, sampleCount * 2);
+            epochOffsets = Arrays.copyOf(epochOffsets, sampleCount * 2);
+        }
+        epochSeconds[sampleCount] = epochSecond;
+        epochOffsets[sampleCount] = offset;
+        sampleCount++;
+    }
+
+    // Offset of the last sampled epoch before `epochSecond`; every row of that second or later
+    // comes after it, also when several epochs share a second. 0 when none is sampled before.
+    public long getOffsetBefore(long epochSecond) {
+        int low = 0;
+        int high = sampleCount - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (epochSeconds[middle] < epochSecond) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found == -1 ? 0 : epochOffsets[found];
+    }
+
+    // Offsets of the header lines before `offset`
+    public long[] getHeadersBefore(long offset) {
+        int count = 0;
+        while (count < headerCount && headerOffsets[count] < offset) {
+            count++;
+        }
+        return Arrays.copyOf(headerOffsets, count);
+    }
+
+    public void write(File tabFile) throws IOException {
+        try (Writer writer = new BufferedWriter(new FileWriter(getFile(tabFile)))) {
+            writer.write(TITLE + " " + tabFile.length() + " " + sampleEpochs + "\n");
+            for (int i = 0; i < headerCount; i++) {
+                writer.write("H " + headerOffsets[i] + "\n");
+            }
+            for (int i = 0; i < sampleCount; i++) {
+                writer.write("E " + epochSeconds[i] + " " + epochOffsets[i] + "\n");
+            }
+        }
+    }
+
+    // null when the tab file has no index or the index does not match it
+    @Nullable
+    public static EpochIndex read(File tabFile) throws IOException {
+        File file = getFile(tabFile);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String title = reader.readLine();
+            if (title == null || !title.startsWith(TITLE + " ")) {
+                return null;
+            }
+            String[] fields = title.substring(TITLE.length() + 1).split(" ");
+            if (fields.length != 2 || Long.parseLong(fields[0]) != tabFile.length()) {
+                return null;
+            }
+            EpochIndex index = new EpochIndex(Integer.parseInt(fields[1]));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                fields = line.split(" ");
+                if (fields.length == 2 && fields[0].equals("H")) {
+                    index.addHeader(Long.parseLong(fields[1]));
+                } else if (fields.length == 3 && fields[0].equals("E")) {
+                    index.addSample(Long.parseLong(fields[1]), Long.parseLong(fields[2]));
+                } else {
+                    return null;
+                }
+            }
+            return index;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
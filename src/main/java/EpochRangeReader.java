@@ -0,0 +1,78 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// Lines of a tab file with epochs in [from, to), in epoch seconds: the header lines
+// before the range, then its rows. With an EpochIndex reading starts at the sampled
+// epoch before `from`, so only about the range itself is read; without one the file
+// is read from the top. Rows are in epoch order, reading stops at the first row after the range.
+public class EpochRangeReader implements TabLineSource, Closeable {
+
+    private final long from;
+    private final long to;
+    private final MappedTabReader reader;
+    private final Deque<String> headers = new ArrayDeque<>();
+    private final TabLineCursor cursor = new TabLineCursor();
+    private boolean done;
+
+    public EpochRangeReader(File tabFile, long from, long to) throws IOException {
+        if (from >= to) {
+            throw new IllegalArgumentException("Начало интервала должно быть раньше конца");
+        }
+        this.from = from;
+        this.to = to;
+        EpochIndex index = EpochIndex.read(tabFile);
+        long start = 0;
+        if (index != null) {
+            start = index.getOffsetBefore(from);
+            for (long offset : index.getHeadersBefore(start)) {
+                try (MappedTabReader headerReader = new MappedTabReader(tabFile, MappedTabReader.DEFAULT_WINDOW_SIZE, offset)) {
+                    CharSequence header = headerReader.readLine();
+                    if (header == null || header.length() == 0 || header.charAt(0) != '#') {
+                        throw new RuntimeException("Индекс не соответствует файлу " + tabFile.getName());
+                    }
+                    headers.add(header.toString());
+                }
+            }
+        }
+        reader = new MappedTabReader(tabFile, MappedTabReader.DEFAULT_WINDOW_SIZE, start);
+    }
+
+    @Nullable
+    @Override
+    public CharSequence readLine() throws IOException {
+        if (!headers.isEmpty()) {
+            return headers.removeFirst();
+        }
+        while (!done) {
+            CharSequence line = reader.readLine();
+            if (line == null) {
+                done = true;
+                break;
+            }
+            if (line.length() == 0 || line.charAt(0) == '#') {
+                return line;
+            }
+            cursor.reset(line);
+            if (cursor.fieldCount() < 5) {
+                throw new RuntimeException("Строка неправильного формата: " + line);
+            }
+            long epochSecond = TabFormat.getEpochSecond(cursor);
+            if (epochSecond >= to) {
+                done = true;
+            } else if (epochSecond >= from) {
+                return line;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
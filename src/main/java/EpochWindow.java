@@ -0,0 +1,65 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+// [begin, end) in whole seconds since 1970-01-01 of the time scale the observations are written in
+public class EpochWindow {
+
+    private static final DateTimeFormatter GFZRNX_EPOCH = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    private static final long DEFAULT_SPAN_SECONDS = 86400;
+
+    private final long begin;
+    private final long end;
+
+    public EpochWindow(long begin, long end) {
+        this.begin = begin;
+        this.end = end;
+    }
+
+    public boolean contains(long epochSecond) {
+        return epochSecond >= begin && epochSecond < end;
+    }
+
+    public boolean isOpenStarted() {
+        return begin == Long.MIN_VALUE;
+    }
+
+    public boolean isOpenEnded() {
+        return end == Long.MAX_VALUE;
+    }
+
+    public long getBegin() {
+        return begin;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getDuration() {
+        return end - begin;
+    }
+
+    public String getGfzrnxBegin() {
+        return LocalDateTime.ofEpochSecond(begin, 0, ZoneOffset.UTC).format(GFZRNX_EPOCH);
+    }
+
+    // The first window has no begin and the last no end, so nothing is lost when the header
+    // times are missing or do not cover the epochs of spliced or re-headed files.
+    public static List<EpochWindow> split(LocalDateTime first, @Nullable LocalDateTime last, int count) {
+        long begin = first.toEpochSecond(ZoneOffset.UTC);
+        long span = last == null ? DEFAULT_SPAN_SECONDS : last.toEpochSecond(ZoneOffset.UTC) - begin + 1;
+        long step = Math.max(1, (span + count - 1) / count);
+        List<EpochWindow> windows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long windowBegin = i == 0 ? Long.MIN_VALUE : begin + i * step;
+            long windowEnd = i == count - 1 ? Long.MAX_VALUE : begin + (i + 1) * step;
+            windows.add(new EpochWindow(windowBegin, windowEnd));
+        }
+        return windows;
+    }
+}
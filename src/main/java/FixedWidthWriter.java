@@ -0,0 +1,198 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// Formats fixed-width rows into a reused byte array, copies each finished row into a
+// pooled direct buffer and writes the buffer to the file channel only when it is full.
+// Characters are stored as single bytes (Latin-1), anything else becomes '?'.
+// With a compressor every full buffer becomes a gzip member compressed in the
+// background; a few members may be pending, they are written in order.
+public class FixedWidthWriter implements Closeable {
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes();
+    private static final int MAX_PENDING_BLOCKS = 4;
+
+    private final FileChannel channel;
+    private final ByteBufferPool pool;
+    @Nullable
+    private final GzipBlockCompressor compressor;
+    private final ArrayDeque<CompletableFuture<byte[]>> pendingBlocks = new ArrayDeque<>();
+    private ByteBuffer buffer;
+    private byte[] row = new byte[256];
+    private int rowLength;
+
+    public FixedWidthWriter(File file, boolean append, ByteBufferPool pool) throws IOException {
+        this(file, append, pool, null);
+    }
+
+    public FixedWidthWriter(File file, boolean append, ByteBufferPool pool, @Nullable GzipBlockCompressor compressor)
+            throws IOException {
+        this.compressor = compressor;
+        this.channel = append
+                ? FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+                : FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.pool = pool;
+        this.buffer = pool.acquire();
+    }
+
+    public FixedWidthWriter append(char c) {
+        ensureRow(1);
+        row[rowLength++] = c <= 0xFF ? (byte) c : (byte) '?';
+        return this;
+    }
+
+    public FixedWidthWriter append(CharSequence text) {
+        return append(text, 0, text.length());
+    }
+
+    public FixedWidthWriter append(CharSequence text, int start, int end) {
+        ensureRow(end - start);
+        byte[] bytes = row;
+        int length = rowLength;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            bytes[length++] = c <= 0xFF ? (byte) c : (byte) '?';
+        }
+        rowLength = length;
+        return this;
+    }
+
+    // Text followed by spaces up to width, like StringUtils.rightPad
+    public FixedWidthWriter appendPadded(CharSequence text, int start, int end, int width) {
+        append(text, start, end);
+        return appendSpaces(width - (end - start));
+    }
+
+    public FixedWidthWriter appendSpaces(int count) {
+        if (count <= 0) {
+            return this;
+        }
+        ensureRow(count);
+        Arrays.fill(row, rowLength, rowLength + count, (byte) ' ');
+        rowLength += count;
+        return this;
+    }
+
+    public FixedWidthWriter newLine() throws IOException {
+        ensureRow(LINE_SEPARATOR.length);
+        System.arraycopy(LINE_SEPARATOR, 0, row, rowLength, LINE_SEPARATOR.length);
+        rowLength += LINE_SEPARATOR.length;
+        return endRow();
+    }
+
+    // Moves the pending row into the buffer, rows longer than the buffer are written in parts
+    public FixedWidthWriter endRow() throws IOException {
+        int offset = 0;
+        while (offset < rowLength) {
+            if (!buffer.hasRemaining()) {
+                writeBuffer();
+            }
+            int count = Math.min(rowLength - offset, buffer.remaining());
+            if (count < rowLength - offset && buffer.position() > 0) {
+                writeBuffer();
+                continue;
+            }
+            buffer.put(row, offset, count);
+            offset += count;
+        }
+        rowLength = 0;
+        return this;
+    }
+
+    private void ensureRow(int count) {
+        if (rowLength + count > row.length) {
+            row = Arrays.copyOf(row, Math.max(row.length * 2, rowLength + count));
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        if (compressor == null) {
+            write(buffer);
+        } else if (buffer.hasRemaining()) {
+            byte[] block = new byte[buffer.remaining()];
+            buffer.get(block);
+            pendingBlocks.addLast(compressor.compress(block));
+            if (pendingBlocks.size() > MAX_PENDING_BLOCKS) {
+                writeCompressed(pendingBlocks.removeFirst());
+            }
+        }
+        buffer.clear();
+    }
+
+    private void writeCompressed(CompletableFuture<byte[]> block) throws IOException {
+        try {
+            write(ByteBuffer.wrap(block.join()));
+        } catch (CompletionException e) {
+            throw new IOException("Не удалось сжать блок файла", e.getCause());
+        }
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    // Closes the file without writing the rows still in the buffer and returns them, so that an
+    // evicted compressed file does not end a gzip member early; see restore() and WriterPool
+    public byte[] detach() throws IOException {
+        endRow();
+        buffer.flip();
+        byte[] rows = new byte[buffer.remaining()];
+        buffer.get(rows);
+        buffer.clear();
+        try {
+            while (!pendingBlocks.isEmpty()) {
+                writeCompressed(pendingBlocks.removeFirst());
+            }
+        } finally {
+            pool.release(buffer);
+            buffer = null;
+            pendingBlocks.clear();
+            channel.close();
+        }
+        return rows;
+    }
+
+    // Puts rows returned by detach() back in front of the next ones
+    public FixedWidthWriter restore(byte[] rows) throws IOException {
+        ensureRow(rows.length);
+        System.arraycopy(rows, 0, row, rowLength, rows.length);
+        rowLength += rows.length;
+        return endRow();
+    }
+
+    public void flush() throws IOException {
+        endRow();
+        writeBuffer();
+        while (!pendingBlocks.isEmpty()) {
+            writeCompressed(pendingBlocks.removeFirst());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            pool.release(buffer);
+            buffer = null;
+            pendingBlocks.clear();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+import java.util.regex.Pattern;
+
+public enum FormatType {
+    RX3,
+    P,
+    O,
+    UNKNOWN;
+
+    private static final Pattern INPUT_NAME = Pattern.compile(".*\\.[0-9]{2,4}([op])$", Pattern.CASE_INSENSITIVE);
+    // RINEX 3 long name of an observation file, e.g. ABCD00XXX_R_20200010000_01D_30S_MO.rnx
+    private static final Pattern LONG_OBSERVATION_NAME = Pattern.compile(".*_[a-z]o\\.rnx$", Pattern.CASE_INSENSITIVE);
+
+    public static FormatType getFormat(String fileName) {
+        String lowerCase = fileName.toLowerCase();
+        if (lowerCase.endsWith(".rx3") || LONG_OBSERVATION_NAME.matcher(lowerCase).matches()) {
+            return RX3;
+        }
+        if (INPUT_NAME.matcher(lowerCase).find()) {
+            if (lowerCase.endsWith("o")) {
+                return O;
+            } else {
+                return P;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    public int getSatNumIndex() {
+        if (this == RX3 || this == O) {
+            return 4;
+        }
+        if (this == P) {
+            return 5;
+        }
+        throw new RuntimeException("Неизвестный тип записи");
+    }
+}
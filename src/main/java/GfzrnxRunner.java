@@ -0,0 +1,212 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+// Starts gfzrnx for every mode. The executable is resolved once per run of the
+// application; a copy bundled in the jar is extracted to a temporary file first.
+// Commands are argument lists, so paths with spaces pass unchanged. Messages of a
+// process go to an OutputDrain and are printed only when it fails. At most
+// maxProcesses run at a time, start() waits for a free slot and startAll() for all of
+// its slots.
+public final class GfzrnxRunner {
+
+    public static final String TYPES_PREFIX = "-obs_types";
+    public static final String SAT_SYS_PREFIX = "-satsys";
+    public static final int DEFAULT_MAX_PROCESSES = Runtime.getRuntime().availableProcessors() * 2;
+
+    private static final String RESOURCE_NAME = "gfzrnx_2.0.1_win32.exe";
+    private static final String EXECUTABLE_DIRECTORY = "./gfzrnx";
+    private static final String EXECUTABLE_SUFFIX = ".exe";
+
+    @Nullable
+    private static String executable;
+    private static volatile Semaphore processSlots = new Semaphore(DEFAULT_MAX_PROCESSES, true);
+    private static volatile int maxProcesses = DEFAULT_MAX_PROCESSES;
+
+    private GfzrnxRunner() {
+    }
+
+    // Path of the bundled executable or the first *.exe in ./gfzrnx, null if there is none
+    @Nullable
+    public static synchronized String findExecutable() {
+        if (executable == null) {
+            try {
+                executable = resolveExecutable();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return executable;
+    }
+
+    @Nullable
+    private static String resolveExecutable() throws IOException {
+        URL resource = GfzrnxRunner.class.getClassLoader().getResource(RESOURCE_NAME);
+        if (resource != null) {
+            if ("file".equals(resource.getProtocol())) {
+                try {
+                    return Paths.get(resource.toURI()).toString();
+                } catch (URISyntaxException e) {
+                    throw new IOException("Неправильный путь к " + RESOURCE_NAME + ": " + resource, e);
+                }
+            }
+            return extractResource();
+        }
+        File exeDirectory = new File(EXECUTABLE_DIRECTORY);
+        if (!exeDirectory.isDirectory()) {
+            return null;
+        }
+        try (Stream<Path> files = Files.list(exeDirectory.toPath())) {
+            return files.filter(x -> Files.isRegularFile(x) && x.getFileName().toString().endsWith(EXECUTABLE_SUFFIX))
+                    .findFirst()
+                    .map(x -> x.toAbsolutePath().toString())
+                    .orElse(null);
+        }
+    }
+
+    // A process cannot be started from inside the jar, the copy is removed on exit
+    private static String extractResource() throws IOException {
+        Path copy = Files.createTempFile("gfzrnx", EXECUTABLE_SUFFIX);
+        copy.toFile().deleteOnExit();
+        try (InputStream stream = GfzrnxRunner.class.getClassLoader().getResourceAsStream(RESOURCE_NAME)) {
+            if (stream == null) {
+                throw new IOException("Не удалось прочитать " + RESOURCE_NAME);
+            }
+            Files.copy(stream, copy, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (!copy.toFile().setExecutable(true)) {
+            throw new IOException("Не удалось сделать исполняемым " + copy);
+        }
+        return copy.toString();
+    }
+
+    // Takes effect for processes started afterwards
+    public static void setMaxProcesses(int maxProcesses) {
+        if (maxProcesses < 1) {
+            throw new IllegalArgumentException("Process count must be positive: " + maxProcesses);
+        }
+        processSlots = new Semaphore(maxProcesses, true);
+        GfzrnxRunner.maxProcesses = maxProcesses;
+    }
+
+    public static int getMaxProcesses() {
+        return maxProcesses;
+    }
+
+    // Without an input path gfzrnx reads the RINEX file from its standard input
+    public static List<String> getCommand(String pathToExecutable, @Nullable String inputPath, List<String> options) {
+        List<String> command = new ArrayList<>();
+        command.add(pathToExecutable);
+        if (inputPath != null) {
+            command.add("-finp");
+            command.add(inputPath);
+        }
+        command.add("-tab");
+        command.add("-f");
+        command.addAll(options);
+        return command;
+    }
+
+    public static List<String> getOption(String prefix, List<String> values, @Nullable Character separator) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < values.size(); i++) {
+            result.append(values.get(i));
+            if (separator != null) {
+                if (i != values.size() - 1) {
+                    result.append(separator);
+                }
+            }
+        }
+        return List.of(prefix, result.toString());
+    }
+
+    public static Execution start(List<String> command) throws IOException, InterruptedException {
+        return start(command, true);
+    }
+
+    // Without pipeOutput the standard output goes to the drain as well, for runs writing to -fout
+    public static Execution start(List<String> command, boolean pipeOutput) throws IOException, InterruptedException {
+        Semaphore slots = processSlots;
+        slots.acquire();
+        return launch(command, pipeOutput, slots);
+    }
+
+    // Processes whose outputs are read together, all of them have to run before any can
+    // finish. Their slots are taken at once: taken one by one, runs waiting for the rest of
+    // their slots could hold every slot between them.
+    public static List<Execution> startAll(List<List<String>> commands) throws IOException, InterruptedException {
+        Semaphore slots = processSlots;
+        if (commands.size() > maxProcesses) {
+            throw new IllegalArgumentException("More processes than slots: " + commands.size());
+        }
+        slots.acquire(commands.size());
+        List<Execution> executions = new ArrayList<>();
+        try {
+            for (List<String> command : commands) {
+                executions.add(launch(command, true, slots));
+            }
+        } catch (IOException | RuntimeException e) {
+            // The failed start has released its own slot, started processes release theirs on exit
+            slots.release(commands.size() - executions.size() - 1);
+            for (Execution execution : executions) {
+                execution.process.destroyForcibly();
+            }
+            throw e;
+        }
+        return executions;
+    }
+
+    // The slot is taken already and is released when the process exits
+    private static Execution launch(List<String> command, boolean pipeOutput, Semaphore slots) throws IOException {
+        Process process;
+        try {
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.redirectErrorStream(!pipeOutput);
+            process = builder.start();
+        } catch (IOException | RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+        process.onExit().whenComplete((x, e) -> slots.release());
+        InputStream messages = pipeOutput ? process.getErrorStream() : process.getInputStream();
+        return new Execution(process, OutputDrain.start(messages, "gfzrnx-output-" + process.pid(), OutputDrain.DEFAULT_CAPACITY));
+    }
+
+    // A started gfzrnx process with the drain of its messages
+    public static final class Execution {
+
+        private final Process process;
+        private final OutputDrain drain;
+
+        private Execution(Process process, OutputDrain drain) {
+            this.process = process;
+            this.drain = drain;
+        }
+
+        public Process getProcess() {
+            return process;
+        }
+
+        // Prints the last messages of a failed run to the error stream
+        public int waitFor() throws InterruptedException {
+            int exitCode = process.waitFor();
+            String messages = drain.getTail();
+            if (exitCode != 0 && !messages.isEmpty()) {
+                System.err.print(messages);
+            }
+            return exitCode;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Writes the grouped files on a fixed number of I/O threads. Every satellite slot
+// belongs to one lane, so its rows are written by one thread in the order they were
+// read. Rows are handed over in batches; each lane has a few batches that are reused,
+// which also limits how far reading can run ahead of writing.
+// A failing file is skipped from then on and reported by finish() with the others.
+public class GroupedFileWriter implements Closeable {
+
+    public static final int DEFAULT_IO_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final int BATCH_LINES = 1024;
+    private static final int BATCHES_PER_LANE = 3;
+
+    // Output file of a slot with the layout its rows are formatted with
+    public static class Target {
+        final File file;
+        final String header;
+        final ProjectionPlan plan;
+
+        public Target(File file, String header, ProjectionPlan plan) {
+            this.file = file;
+            this.header = header;
+            this.plan = plan;
+        }
+    }
+
+    private static class Batch {
+        final StringBuilder text = new StringBuilder();
+        int[] lineEnds = new int[BATCH_LINES];
+        int[] slots = new int[BATCH_LINES];
+        Target[] targets = new Target[BATCH_LINES];
+        int lines;
+
+        void add(int slot, Target target, TabLineCursor line) {
+            text.append(line.text(), line.lineStart(), line.lineEnd());
+            lineEnds[lines] = text.length();
+            slots[lines] = slot;
+            targets[lines] = target;
+            lines++;
+        }
+
+        boolean isFull() {
+            return lines == BATCH_LINES;
+        }
+
+        void clear() {
+            text.setLength(0);
+            Arrays.fill(targets, 0, lines, null);
+            lines = 0;
+        }
+    }
+
+    private static final Batch END = new Batch();
+
+    private class Lane implements Runnable {
+        final BlockingQueue<Batch> ready = new ArrayBlockingQueue<>(BATCHES_PER_LANE + 1);
+        final BlockingQueue<Batch> free = new ArrayBlockingQueue<>(BATCHES_PER_LANE);
+        final WriterPool writers;
+        final Map<File, Exception> errors = new LinkedHashMap<>();
+        final TabLineCursor cursor = new TabLineCursor();
+        final Thread thread;
+        Batch current;
+
+        Lane(int index, int maxOpenFiles) {
+            writers = new WriterPool(maxOpenFiles);
+            for (int i = 0; i < BATCHES_PER_LANE; i++) {
+                free.add(new Batch());
+            }
+            thread = new Thread(this, "grouped-files-writer-" + index);
+            thread.setDaemon(true);
+        }
+
+        void add(int slot, Target target, TabLineCursor line) throws IOException {
+            if (current == null) {
+                current = take(free);
+            }
+            current.add(slot, target, line);
+            if (current.isFull()) {
+                submit();
+            }
+        }
+
+        void submit() throws IOException {
+            if (current != null && current.lines > 0) {
+                put(current);
+                current = null;
+            }
+        }
+
+        Batch take(BlockingQueue<Batch> queue) throws IOException {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Запись файлов прервана", e);
+            }
+        }
+
+        void put(Batch batch) throws IOException {
+            try {
+                ready.put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Запись файлов прервана", e);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Batch batch = ready.take();
+                    if (batch == END) {
+                        return;
+                    }
+                    if (metrics == null) {
+                        write(batch);
+                    } else {
+                        ConversionMetrics.Span span = metrics.start(ConversionMetrics.Stage.WRITING);
+                        write(batch);
+                        span.stop(batch.text.length(), batch.lines);
+                    }
+                    batch.clear();
+                    free.put(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void write(Batch batch) {
+            int start = 0;
+            for (int i = 0; i < batch.lines; i++) {
+                Target target = batch.targets[i];
+                int end = batch.lineEnds[i];
+                if (!errors.containsKey(target.file)) {
+                    try {
+                        cursor.reset(batch.text, start, end);
+                        FixedWidthWriter writer = writers.getWriter(batch.slots[i], target.file, target.header);
+                        target.plan.writeProcessedLine(cursor, writer);
+                    } catch (IOException | RuntimeException e) {
+                        errors.put(target.file, e);
+                    }
+                    writers.drainEvictionFailures(errors);
+                }
+                start = end;
+            }
+        }
+    }
+
+    private final Lane[] lanes;
+    @Nullable
+    private ConversionMetrics metrics;
+    private boolean started;
+    private boolean finished;
+
+    public GroupedFileWriter(int ioThreads, int maxOpenFiles) {
+        if (ioThreads < 1) {
+            throw new IllegalArgumentException("I/O thread count must be positive: " + ioThreads);
+        }
+        lanes = new Lane[ioThreads];
+        for (int i = 0; i < ioThreads; i++) {
+            // Slots are spread evenly over the lanes, rounding up keeps room for all of them
+            lanes[i] = new Lane(i, Math.max(1, (maxOpenFiles + ioThreads - 1) / ioThreads));
+        }
+    }
+
+    // Set before the first write, the lanes read it once they run
+    public void setMetrics(@Nullable ConversionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Set before the first write; the files are then gzip streams of independent blocks
+    public void setCompressor(@Nullable GzipBlockCompressor compressor) {
+        for (Lane lane : lanes) {
+            lane.writers.setCompressor(compressor);
+        }
+    }
+
+    // Set before the first write, see WriterPool.setAppendExisting
+    public void setAppendExisting(boolean appendExisting) {
+        for (Lane lane : lanes) {
+            lane.writers.setAppendExisting(appendExisting);
+        }
+    }
+
+    public void write(int slot, Target target, TabLineCursor line) throws IOException {
+        if (!started) {
+            for (Lane lane : lanes) {
+                lane.thread.start();
+            }
+            started = true;
+        }
+        lanes[slot % lanes.length].add(slot, target, line);
+    }
+
+    // Files created or truncated by the lanes, complete once finish() or close() has returned
+    public List<File> getStartedFiles() {
+        List<File> files = new ArrayList<>();
+        for (Lane lane : lanes) {
+            files.addAll(lane.writers.getStartedFiles());
+        }
+        return files;
+    }
+
+    // Waits for all rows to be written and closes the files
+    public void finish() throws IOException {
+        finished = true;
+        Map<File, Exception> errors = new LinkedHashMap<>();
+        IOException failure = null;
+        for (Lane lane : lanes) {
+            lane.submit();
+            lane.put(END);
+        }
+        for (Lane lane : lanes) {
+            try {
+                if (started) {
+                    lane.thread.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Запись файлов прервана", e);
+            }
+            errors.putAll(lane.errors);
+            try {
+                lane.writers.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (!errors.isEmpty()) {
+            failure = getFailure(errors, failure);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static IOException getFailure(Map<File, Exception> errors, IOException closeFailure) {
+        List<String> messages = new ArrayList<>();
+        errors.forEach((file, e) -> messages.add(file.getPath() + ": " + e.getMessage()));
+        IOException failure = new IOException("Не удалось записать файлы (" + errors.size() + "): " + String.join("; ", messages));
+        errors.values().forEach(failure::addSuppressed);
+        if (closeFailure != null) {
+            failure.addSuppressed(closeFailure);
+        }
+        return failure;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        IOException failure = null;
+        for (Lane lane : lanes) {
+            lane.thread.interrupt();
+        }
+        for (Lane lane : lanes) {
+            try {
+                if (started) {
+                    lane.thread.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                lane.writers.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
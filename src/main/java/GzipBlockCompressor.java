@@ -0,0 +1,68 @@
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// Compresses blocks of output into independent gzip members on an executor, so the
+// blocks of all files are compressed in parallel while the writers keep their order.
+// Concatenated members are one valid gzip stream (RFC 1952): a file can be closed
+// and appended to later, gzip -d and GZIPInputStream read it as a whole.
+public class GzipBlockCompressor {
+
+    public static final String SUFFIX = ".gz";
+
+    private static final int HEADER_SIZE = 10;
+    private static final int TRAILER_SIZE = 8;
+    // No name or time; XFL 4 marks the fastest level, OS unknown
+    private static final byte[] HEADER = {
+            0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 4, (byte) 0xff
+    };
+    // One raw deflater per compressing thread, reset for every block. The padded
+    // columns compress well even at the fastest level, which keeps up with the writers.
+    private static final ThreadLocal<Deflater> DEFLATERS =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+
+    private final Executor executor;
+
+    public GzipBlockCompressor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public CompletableFuture<byte[]> compress(byte[] block) {
+        return CompletableFuture.supplyAsync(() -> compressBlock(block, 0, block.length), executor);
+    }
+
+    // Whole gzip member of the given bytes
+    public static byte[] compressBlock(byte[] data, int offset, int length) {
+        Deflater deflater = DEFLATERS.get();
+        deflater.reset();
+        deflater.setInput(data, offset, length);
+        deflater.finish();
+        byte[] member = new byte[HEADER_SIZE + length / 4 + 64];
+        System.arraycopy(HEADER, 0, member, 0, HEADER_SIZE);
+        int size = HEADER_SIZE;
+        while (!deflater.finished()) {
+            if (size == member.length) {
+                member = Arrays.copyOf(member, member.length * 2);
+            }
+            size += deflater.deflate(member, size, member.length - size);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, length);
+        if (size + TRAILER_SIZE > member.length) {
+            member = Arrays.copyOf(member, size + TRAILER_SIZE);
+        }
+        size = putInt(member, size, (int) crc.getValue());
+        size = putInt(member, size, length);
+        return size == member.length ? member : Arrays.copyOf(member, size);
+    }
+
+    private static int putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+        bytes[offset + 2] = (byte) (value >>> 16);
+        bytes[offset + 3] = (byte) (value >>> 24);
+        return offset + 4;
+    }
+}
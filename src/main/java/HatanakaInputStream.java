@@ -0,0 +1,390 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Streaming expansion of Hatanaka compact RINEX (CRX 1.0 for RINEX 2, CRX 3.0 for
+// RINEX 3) back to RINEX, one epoch at a time like crx2rnx. Epoch lines and flags
+// are text differences against the previous epoch, observations are integers in
+// 0.001 units restored from the differences of their arcs.
+public class HatanakaInputStream extends InputStream {
+
+    static final String CRINEX_LABEL = "CRINEX VERS   / TYPE";
+    private static final String CRINEX_PROG_LABEL = "CRINEX PROG / DATE";
+    private static final String END_OF_HEADER = "END OF HEADER";
+    private static final String RINEX2_TYPES_LABEL = "# / TYPES OF OBSERV";
+    private static final String RINEX3_TYPES_LABEL = "SYS / # / OBS TYPES";
+    private static final int RINEX2_SATELLITES_PER_LINE = 12;
+    private static final int RINEX2_OBSERVATIONS_PER_LINE = 5;
+    private static final int OBSERVATION_WIDTH = 14;
+
+    // Observation arc: value and its differences up to the order of the arc
+    private static final class Arc {
+        private long[] values;
+        private int order = -1;
+        private int maxOrder;
+
+        boolean isSet() {
+            return order >= 0;
+        }
+
+        void init(int maxOrder, long value) {
+            if (values == null || values.length <= maxOrder) {
+                values = new long[maxOrder + 1];
+            }
+            this.maxOrder = maxOrder;
+            order = 0;
+            values[0] = value;
+        }
+
+        long next(long difference) {
+            if (order < maxOrder) {
+                order++;
+            }
+            values[order] = difference;
+            for (int i = order; i > 0; i--) {
+                values[i - 1] += values[i];
+            }
+            return values[0];
+        }
+
+        void reset() {
+            order = -1;
+        }
+    }
+
+    private static final class SatelliteState {
+        private final Arc[] arcs;
+        private final long[] values;
+        private final boolean[] present;
+        private String flags = "";
+
+        SatelliteState(int count) {
+            arcs = new Arc[count];
+            for (int i = 0; i < count; i++) {
+                arcs[i] = new Arc();
+            }
+            values = new long[count];
+            present = new boolean[count];
+        }
+    }
+
+    private final BufferedReader reader;
+    private final boolean rinex3;
+    // Observation counts of RINEX 3 by system letter
+    private final Map<Character, Integer> obsCounts = new HashMap<>();
+    private int rinex2ObsCount;
+    private Map<String, SatelliteState> previous = new HashMap<>();
+    private String epochLine = "";
+    private final Arc clock = new Arc();
+    private final StringBuilder text = new StringBuilder();
+    private byte[] buffer = new byte[0];
+    private int position;
+    private boolean eof;
+
+    public HatanakaInputStream(InputStream in) throws IOException {
+        reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.ISO_8859_1));
+        String versionLine = reader.readLine();
+        if (versionLine == null || !RinexHeader.getLabel(versionLine).startsWith(CRINEX_LABEL)) {
+            throw new IOException("Файл не является компактным RINEX (Hatanaka)");
+        }
+        String version = versionLine.substring(0, Math.min(9, versionLine.length())).trim();
+        if (version.startsWith("1.")) {
+            rinex3 = false;
+        } else if (version.startsWith("3.")) {
+            rinex3 = true;
+        } else {
+            throw new IOException("Неподдерживаемая версия компактного RINEX: " + version);
+        }
+        String line = reader.readLine();
+        if (line == null || !RinexHeader.getLabel(line).startsWith(CRINEX_PROG_LABEL)) {
+            throw new RuntimeException("Нет строки " + CRINEX_PROG_LABEL + " в компактном RINEX");
+        }
+        while ((line = reader.readLine()) != null) {
+            readHeaderLine(line);
+            appendLine(line);
+            if (RinexHeader.getLabel(line).startsWith(END_OF_HEADER)) {
+                break;
+            }
+        }
+        flush();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == buffer.length && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == buffer.length && !fill()) {
+            return -1;
+        }
+        int n = Math.min(len, buffer.length - position);
+        System.arraycopy(buffer, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private boolean fill() throws IOException {
+        while (!eof && position == buffer.length) {
+            String line = reader.readLine();
+            if (line == null) {
+                eof = true;
+                break;
+            }
+            readEpoch(line);
+            flush();
+        }
+        return position < buffer.length;
+    }
+
+    private void flush() {
+        buffer = text.toString().getBytes(StandardCharsets.ISO_8859_1);
+        position = 0;
+        text.setLength(0);
+    }
+
+    private void readEpoch(String line) throws IOException {
+        if (line.startsWith(rinex3 ? ">" : "&")) {
+            // Initialization: every satellite starts over, flags included
+            epochLine = rinex3 ? line : " " + line.substring(1);
+            previous = new HashMap<>();
+        } else {
+            epochLine = applyDifference(epochLine, line);
+        }
+        int flagIndex = rinex3 ? 31 : 28;
+        char flag = epochLine.length() > flagIndex ? epochLine.charAt(flagIndex) : '0';
+        int count = parseCount(rinex3 ? 32 : 29);
+        if (flag >= '2' && flag <= '5') {
+            // Event: the epoch line is followed by count header or comment lines kept as is
+            appendLine(epochLine);
+            for (int i = 0; i < count; i++) {
+                String record = readLine();
+                readHeaderLine(record);
+                appendLine(record);
+            }
+            previous = new HashMap<>();
+            clock.reset();
+            return;
+        }
+        String clockLine = readLine();
+        boolean hasClock = !clockLine.isEmpty();
+        long clockValue = 0;
+        if (hasClock) {
+            clockValue = readValue(clock, clockLine);
+        } else {
+            clock.reset();
+        }
+        int listStart = rinex3 ? 41 : 32;
+        List<String> satellites = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int start = listStart + 3 * i;
+            if (epochLine.length() < start + 3) {
+                throw new RuntimeException("Неправильная строка эпохи компактного RINEX: " + epochLine);
+            }
+            satellites.add(epochLine.substring(start, start + 3));
+        }
+        appendEpochLines(satellites, hasClock, clockValue);
+        Map<String, SatelliteState> current = new HashMap<>();
+        for (String satellite : satellites) {
+            int obsCount = getObsCount(satellite);
+            SatelliteState state = previous.get(satellite);
+            if (state == null || state.arcs.length != obsCount) {
+                state = new SatelliteState(obsCount);
+            }
+            readSatellite(state, readLine());
+            current.put(satellite, state);
+            appendObservations(satellite, state);
+        }
+        previous = current;
+    }
+
+    // Fields separated by single spaces, an empty field is a missing observation,
+    // the text after the last field is the difference of the LLI and SSI flags
+    private void readSatellite(SatelliteState state, String line) {
+        int start = 0;
+        for (int i = 0; i < state.arcs.length; i++) {
+            int end = start <= line.length() ? line.indexOf(' ', start) : -1;
+            if (end < 0) {
+                end = line.length();
+            }
+            if (start >= end) {
+                state.arcs[i].reset();
+                state.present[i] = false;
+            } else {
+                state.values[i] = readValue(state.arcs[i], line.substring(start, end));
+                state.present[i] = true;
+            }
+            start = end + 1;
+        }
+        String flags = start < line.length() ? line.substring(start) : "";
+        state.flags = applyDifference(state.flags, flags);
+    }
+
+    // "n&value" starts an arc of order n, anything else is its next difference
+    private static long readValue(Arc arc, String field) {
+        try {
+            int separator = field.indexOf('&');
+            if (separator >= 0) {
+                long value = Long.parseLong(field.substring(separator + 1));
+                arc.init(Integer.parseInt(field.substring(0, separator)), value);
+                return value;
+            }
+            if (!arc.isSet()) {
+                throw new RuntimeException("Разность без начала дуги в компактном RINEX: " + field);
+            }
+            return arc.next(Long.parseLong(field));
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Неправильное значение в компактном RINEX: " + field, e);
+        }
+    }
+
+    private void appendEpochLines(List<String> satellites, boolean hasClock, long clockValue) {
+        StringBuilder line = new StringBuilder();
+        if (rinex3) {
+            line.append(epochLine, 0, Math.min(41, epochLine.length()));
+            if (hasClock) {
+                pad(line, 41);
+                TabFormat.appendFixed(line, clockValue, 12, 15);
+            }
+            appendLine(trimEnd(line));
+            return;
+        }
+        line.append(epochLine, 0, Math.min(32, epochLine.length()));
+        pad(line, 32);
+        for (int i = 0; i < satellites.size() || i == 0; i++) {
+            if (i > 0 && i % RINEX2_SATELLITES_PER_LINE == 0) {
+                appendLine(trimEnd(line));
+                line.setLength(0);
+                pad(line, 32);
+            }
+            if (i < satellites.size()) {
+                line.append(satellites.get(i));
+            }
+            if (i == Math.min(satellites.size(), RINEX2_SATELLITES_PER_LINE) - 1 && hasClock) {
+                pad(line, 68);
+                TabFormat.appendFixed(line, clockValue, 9, 12);
+            }
+        }
+        appendLine(trimEnd(line));
+    }
+
+    private void appendObservations(String satellite, SatelliteState state) {
+        StringBuilder line = new StringBuilder();
+        if (rinex3) {
+            line.append(satellite);
+        }
+        for (int i = 0; i < state.arcs.length; i++) {
+            if (!rinex3 && i > 0 && i % RINEX2_OBSERVATIONS_PER_LINE == 0) {
+                appendLine(trimEnd(line));
+                line.setLength(0);
+            }
+            if (state.present[i]) {
+                TabFormat.appendFixed(line, state.values[i], 3, OBSERVATION_WIDTH);
+            } else {
+                pad(line, line.length() + OBSERVATION_WIDTH);
+            }
+            line.append(flag(state.flags, 2 * i)).append(flag(state.flags, 2 * i + 1));
+        }
+        appendLine(trimEnd(line));
+    }
+
+    private void readHeaderLine(String line) {
+        String label = RinexHeader.getLabel(line);
+        try {
+            if (label.startsWith(RINEX2_TYPES_LABEL) && !line.substring(0, 6).trim().isEmpty()) {
+                rinex2ObsCount = Integer.parseInt(line.substring(0, 6).trim());
+            } else if (label.startsWith(RINEX3_TYPES_LABEL) && line.charAt(0) != ' ') {
+                obsCounts.put(line.charAt(0), Integer.parseInt(line.substring(3, 6).trim()));
+            }
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Неправильная строка типов наблюдений: " + line, e);
+        }
+    }
+
+    private int getObsCount(String satellite) {
+        if (!rinex3) {
+            return rinex2ObsCount;
+        }
+        Integer count = obsCounts.get(satellite.charAt(0));
+        if (count == null) {
+            throw new RuntimeException("Нет типов наблюдений для спутника " + satellite);
+        }
+        return count;
+    }
+
+    private int parseCount(int start) {
+        if (epochLine.length() < start + 3) {
+            throw new RuntimeException("Неправильная строка эпохи компактного RINEX: " + epochLine);
+        }
+        try {
+            return Integer.parseInt(epochLine.substring(start, start + 3).trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Неправильная строка эпохи компактного RINEX: " + epochLine, e);
+        }
+    }
+
+    private String readLine() throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            throw new RuntimeException("Компактный RINEX обрывается внутри эпохи");
+        }
+        return line;
+    }
+
+    private void appendLine(CharSequence line) {
+        text.append(line).append('\n');
+    }
+
+    // A space keeps the old character, '&' blanks it, anything else replaces it
+    static String applyDifference(String old, String difference) {
+        StringBuilder result = new StringBuilder(old);
+        for (int i = 0; i < difference.length(); i++) {
+            char c = difference.charAt(i);
+            if (i >= result.length()) {
+                result.append(' ');
+            }
+            if (c == '&') {
+                result.setCharAt(i, ' ');
+            } else if (c != ' ') {
+                result.setCharAt(i, c);
+            }
+        }
+        return result.toString();
+    }
+
+    private static char flag(String flags, int index) {
+        return index < flags.length() ? flags.charAt(index) : ' ';
+    }
+
+    private static void pad(StringBuilder line, int length) {
+        while (line.length() < length) {
+            line.append(' ');
+        }
+    }
+
+    private static String trimEnd(StringBuilder line) {
+        int end = line.length();
+        while (end > 0 && line.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return line.substring(0, end);
+    }
+}
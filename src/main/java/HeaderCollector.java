@@ -0,0 +1,24 @@
+import java.util.HashMap;
+import java.util.Map;
+
+public class HeaderCollector implements TabLineConsumer {
+
+    private final Map<String, String> systemToHeaderMap = new HashMap<>();
+
+    @Override
+    public void onHeader(TabLineCursor header) {
+        if (header.fieldCount() < 2){
+            throw new RuntimeException("Заголовок неправильного формата: "+ header.line());
+        }
+        String system = header.field(1);
+        systemToHeaderMap.put(system, header.line().toString());
+    }
+
+    @Override
+    public void onObservation(TabLineCursor line) {
+    }
+
+    public Map<String, String> getHeaderMap() {
+        return systemToHeaderMap;
+    }
+}
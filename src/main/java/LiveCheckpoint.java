@@ -0,0 +1,175 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Position of a live output folder, saved to live-checkpoint.properties after every update:
+//   epoch.<output>=<date> <time>   last epoch written to each output, see OutputEpochs
+//   output.<path>=<length>         every grouped file and the counter file, path relative to the folder
+//   input.<name>=<size>:<modified> inputs converted so far
+//   headers.<name>=<count>, header.<n>.<name>=<line>  header lines of a tab input, to read what is appended to it
+// Before an update the outputs are cut back to the recorded lengths and unrecorded ones
+// removed, so a failed or interrupted update leaves no partial rows behind.
+public class LiveCheckpoint {
+
+    public static final String FILE_NAME = "live-checkpoint.properties";
+
+    private static final String EPOCH_PREFIX = "epoch.";
+    private static final String OUTPUT_PREFIX = "output.";
+    private static final String INPUT_PREFIX = "input.";
+    private static final String HEADERS_PREFIX = "headers.";
+    private static final String HEADER_PREFIX = "header.";
+
+    private final File outputDir;
+    private final Properties properties = new Properties();
+
+    private LiveCheckpoint(File outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    public static File getFile(File outputDir) {
+        return new File(outputDir, FILE_NAME);
+    }
+
+    // An empty checkpoint when the folder has none yet
+    public static LiveCheckpoint load(File outputDir) throws IOException {
+        LiveCheckpoint checkpoint = new LiveCheckpoint(outputDir);
+        File file = getFile(outputDir);
+        if (file.isFile()) {
+            try (InputStream stream = new FileInputStream(file)) {
+                checkpoint.properties.load(stream);
+            }
+        }
+        return checkpoint;
+    }
+
+    // Written to a temporary file first, a checkpoint on disk is always complete
+    public void save() throws IOException {
+        Path temporary = Files.createTempFile(outputDir.toPath(), FILE_NAME, ".tmp");
+        try {
+            try (OutputStream stream = new FileOutputStream(temporary.toFile())) {
+                properties.store(stream, null);
+            }
+            Files.move(temporary, getFile(outputDir).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    // True when grouped or counter files exist that no checkpoint accounts for
+    public static boolean hasUntrackedOutputs(File outputDir) throws IOException {
+        return !getFile(outputDir).isFile() && !listOutputs(outputDir).isEmpty();
+    }
+
+    // A copy for an update to fill, saved with setOutputEpochs() once it succeeds
+    public OutputEpochs getOutputEpochs() {
+        OutputEpochs epochs = new OutputEpochs();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(EPOCH_PREFIX)) {
+                epochs.put(key.substring(EPOCH_PREFIX.length()), OutputEpochs.Epoch.parse(properties.getProperty(key)));
+            }
+        }
+        return epochs;
+    }
+
+    public void setOutputEpochs(OutputEpochs epochs) {
+        properties.stringPropertyNames().stream()
+                .filter(x -> x.startsWith(EPOCH_PREFIX))
+                .forEach(properties::remove);
+        epochs.getAll().forEach((output, epoch) -> properties.setProperty(EPOCH_PREFIX + output, epoch.toString()));
+    }
+
+    public boolean isConverted(File input) {
+        return getInputState(input.length(), input.lastModified()).equals(properties.getProperty(INPUT_PREFIX + input.getName()));
+    }
+
+    // Size of the input when it was last converted, -1 if it was not
+    public long getInputSize(File input) {
+        String state = properties.getProperty(INPUT_PREFIX + input.getName());
+        return state == null ? -1 : Long.parseLong(state.substring(0, state.indexOf(':')));
+    }
+
+    public List<String> getHeaders(File input) {
+        int count = Integer.parseInt(properties.getProperty(HEADERS_PREFIX + input.getName(), "0"));
+        List<String> headers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            headers.add(properties.getProperty(HEADER_PREFIX + i + "." + input.getName()));
+        }
+        return headers;
+    }
+
+    public void setInput(File input, long size, long modified, List<String> headers) {
+        String name = input.getName();
+        int oldCount = Integer.parseInt(properties.getProperty(HEADERS_PREFIX + name, "0"));
+        for (int i = 0; i < oldCount; i++) {
+            properties.remove(HEADER_PREFIX + i + "." + name);
+        }
+        properties.setProperty(INPUT_PREFIX + name, getInputState(size, modified));
+        properties.setProperty(HEADERS_PREFIX + name, String.valueOf(headers.size()));
+        for (int i = 0; i < headers.size(); i++) {
+            properties.setProperty(HEADER_PREFIX + i + "." + name, headers.get(i));
+        }
+    }
+
+    // Records the current lengths of all outputs, after a successful update
+    public void recordOutputs() throws IOException {
+        properties.stringPropertyNames().stream()
+                .filter(x -> x.startsWith(OUTPUT_PREFIX))
+                .forEach(properties::remove);
+        for (Path output : listOutputs(outputDir)) {
+            properties.setProperty(OUTPUT_PREFIX + getRelativePath(output), String.valueOf(Files.size(output)));
+        }
+    }
+
+    // Cuts the outputs back to the recorded lengths and removes the ones written since
+    public void restoreOutputs() throws IOException {
+        for (Path output : listOutputs(outputDir)) {
+            String length = properties.getProperty(OUTPUT_PREFIX + getRelativePath(output));
+            if (length == null) {
+                Files.delete(output);
+            } else if (Files.size(output) > Long.parseLong(length)) {
+                try (FileChannel channel = FileChannel.open(output, StandardOpenOption.WRITE)) {
+                    channel.truncate(Long.parseLong(length));
+                }
+            }
+        }
+    }
+
+    private String getRelativePath(Path output) {
+        return outputDir.toPath().relativize(output).toString().replace(File.separatorChar, '/');
+    }
+
+    private static List<Path> listOutputs(File outputDir) throws IOException {
+        List<Path> outputs = new ArrayList<>();
+        Path groupedDir = new File(outputDir, SatelliteGrouper.GROUPED_DIR_NAME).toPath();
+        if (Files.isDirectory(groupedDir)) {
+            try (Stream<Path> paths = Files.walk(groupedDir)) {
+                outputs.addAll(paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList()));
+            }
+        }
+        for (boolean compressed : new boolean[]{false, true}) {
+            File counter = ComponentCounter.getFile(outputDir, compressed);
+            if (counter.isFile()) {
+                outputs.add(counter.toPath());
+            }
+        }
+        return outputs;
+    }
+
+    private static String getInputState(long size, long modified) {
+        return size + ":" + modified;
+    }
+}
@@ -0,0 +1,318 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+// Live conversion of an input folder:
+// RinexApplication -live -input <dir> -output <dir> [-obs_types C1,L1] [-satsys GRE] [-native] [-gzip]
+//                  [-io_threads N] [-settle_ms N]
+// Files already in the folder are converted first, then new and grown files as they land.
+// Every update is appended to grouped-files and the counter file of the output folder and
+// keeps each row only after the last epoch written to its own grouped file or counter
+// system, as saved in a LiveCheckpoint; inputs for the same time with other satellites still
+// reach their files. Grown tab files are read from where the last update stopped; RINEX
+// files are converted again whole and filtered by epoch. A file is taken once it has not changed for settle_ms.
+// Runs until the process is stopped.
+public class LiveRunner {
+
+    public static final String LIVE_FLAG = "-live";
+
+    private static final long DEFAULT_SETTLE_MILLIS = 2000;
+
+    private static class Options {
+        File inputDir;
+        File outputDir;
+        List<String> obsTypes;
+        List<String> satSystems;
+        int ioThreads = GroupedFileWriter.DEFAULT_IO_THREADS;
+        long settleMillis = DEFAULT_SETTLE_MILLIS;
+        boolean gzip;
+        boolean nativeReader;
+    }
+
+    // Size and modification time of a changed input and when it was last seen changing
+    private static class Change {
+        final long size;
+        final long modified;
+        final long nanos;
+
+        private Change(File file) {
+            this.size = file.length();
+            this.modified = file.lastModified();
+            this.nanos = System.nanoTime();
+        }
+
+        boolean isSame(File file) {
+            return file.length() == size && file.lastModified() == modified;
+        }
+    }
+
+    private final Options options;
+    @Nullable
+    private final String executable;
+    private final LiveCheckpoint checkpoint;
+    private final Map<File, Change> changes = new TreeMap<>();
+
+    private LiveRunner(Options options, @Nullable String executable, LiveCheckpoint checkpoint) {
+        this.options = options;
+        this.executable = executable;
+        this.checkpoint = checkpoint;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    public static int run(String[] args) {
+        Options options;
+        try {
+            options = parseOptions(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Использование: " + LIVE_FLAG + " -input <папка> -output <папка> [-obs_types C1,L1] [-satsys GRE]"
+                    + " [-native] [-gzip] [-io_threads N] [-settle_ms N]");
+            return 2;
+        }
+        if (!options.inputDir.isDirectory()) {
+            System.err.println("Папка не найдена: " + options.inputDir);
+            return 2;
+        }
+        // Tab inputs are regrouped without gfzrnx, a RINEX file fails its update when it is missing
+        String executable = options.nativeReader ? null : GfzrnxRunner.findExecutable();
+        try {
+            options.outputDir.mkdirs();
+            if (LiveCheckpoint.hasUntrackedOutputs(options.outputDir)) {
+                System.err.println("Папка " + options.outputDir + " уже содержит результаты обработки без "
+                        + LiveCheckpoint.FILE_NAME);
+                return 1;
+            }
+            new LiveRunner(options, executable, LiveCheckpoint.load(options.outputDir)).watch();
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Ошибка обработки папки " + options.inputDir + ": " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    private void watch() throws IOException, InterruptedException {
+        // Leftovers of an update that was interrupted
+        checkpoint.restoreOutputs();
+        Path inputDir = options.inputDir.toPath();
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            // Registered before the scan, so files landing meanwhile are not missed
+            inputDir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            scan();
+            System.out.println("Ожидание файлов в папке " + inputDir);
+            while (true) {
+                WatchKey key = changes.isEmpty() ? watcher.take() : watcher.poll(options.settleMillis, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            scan();
+                        } else {
+                            addChange(inputDir.resolve((Path) event.context()).toFile());
+                        }
+                    }
+                    if (!key.reset()) {
+                        throw new IOException("Папка больше недоступна");
+                    }
+                }
+                updateSettled();
+            }
+        }
+    }
+
+    private void scan() throws IOException {
+        for (File file : BatchRunner.findInputs(options.inputDir.getPath())) {
+            addChange(file);
+        }
+    }
+
+    private void addChange(File file) {
+        if (!file.isFile() || ConversionJob.getFormat(file) == FormatType.UNKNOWN) {
+            return;
+        }
+        Change change = changes.get(file);
+        if (change == null || !change.isSame(file)) {
+            changes.put(file, new Change(file));
+        }
+    }
+
+    // Converts the files whose size has settled, in name order
+    private void updateSettled() throws IOException, InterruptedException {
+        long settleNanos = TimeUnit.MILLISECONDS.toNanos(options.settleMillis);
+        Iterator<Map.Entry<File, Change>> iterator = changes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<File, Change> entry = iterator.next();
+            File file = entry.getKey();
+            if (!file.isFile()) {
+                iterator.remove();
+                continue;
+            }
+            // Writers may set the size first and fill the file afterwards, the time shows that
+            if (!entry.getValue().isSame(file)) {
+                entry.setValue(new Change(file));
+                continue;
+            }
+            if (System.nanoTime() - entry.getValue().nanos < settleNanos) {
+                continue;
+            }
+            iterator.remove();
+            if (!checkpoint.isConverted(file)) {
+                update(file);
+            }
+        }
+    }
+
+    // A failed update is rolled back; the file is tried again when it changes or on the next start
+    private void update(File inputFile) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        long size = inputFile.length();
+        long modified = inputFile.lastModified();
+        ConversionJob job = new ConversionJob(inputFile, options.outputDir, executable, options.satSystems, null)
+                .setObsTypes(options.obsTypes)
+                .setIoThreads(options.ioThreads)
+                .setCompressOutput(options.gzip)
+                .setNativeReader(options.nativeReader)
+                .setAppend(true);
+        long offset = getTabOffset(inputFile);
+        if (offset > 0) {
+            job.setTabOffset(offset, checkpoint.getHeaders(inputFile));
+        }
+        OutputEpochs epochs = checkpoint.getOutputEpochs().setKeepResumeEpoch(offset > 0);
+        job.setOutputEpochs(epochs);
+        HeaderTracker tracker = new HeaderTracker();
+        int exitCode;
+        TabFileProcessor processor = null;
+        try {
+            processor = job.createProcessor().addConsumer(tracker);
+            exitCode = job.run(processor);
+        } catch (IOException | RuntimeException e) {
+            if (processor != null) {
+                processor.close();
+            }
+            checkpoint.restoreOutputs();
+            System.out.printf(Locale.US, "ОШИБКА %s: %s%n", inputFile.getPath(), e);
+            return;
+        } catch (InterruptedException e) {
+            processor.close();
+            checkpoint.restoreOutputs();
+            throw e;
+        }
+        if (exitCode != 0) {
+            checkpoint.restoreOutputs();
+            System.out.printf(Locale.US, "ОШИБКА %s: GFZRNX завершился с кодом %d%n", inputFile.getPath(), exitCode);
+            return;
+        }
+        int updated = countUpdated(checkpoint.getOutputEpochs(), epochs);
+        checkpoint.setOutputEpochs(epochs);
+        List<String> headers = ConversionJob.isTabFile(inputFile) ? new ArrayList<>(tracker.headers.values()) : List.of();
+        checkpoint.setInput(inputFile, size, modified, headers);
+        checkpoint.recordOutputs();
+        checkpoint.save();
+        System.out.printf(Locale.US, "OK     %s: %d строк, обновлено выходных файлов %d, %.1f с%n", inputFile.getPath(),
+                processor.getLineCount(), updated, (System.nanoTime() - start) / 1e9);
+    }
+
+    // Outputs whose last epoch moved during an update
+    private static int countUpdated(OutputEpochs before, OutputEpochs after) {
+        int updated = 0;
+        for (Map.Entry<String, OutputEpochs.Epoch> entry : after.getAll().entrySet()) {
+            OutputEpochs.Epoch previous = before.get(entry.getKey());
+            if (previous == null || entry.getValue().isAfter(previous)) {
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    // Where the last update of a grown tab file stopped, 0 to read it whole
+    private long getTabOffset(File inputFile) throws IOException {
+        long offset = checkpoint.getInputSize(inputFile);
+        if (!ConversionJob.isTabFile(inputFile) || offset <= 0 || offset > inputFile.length()) {
+            return 0;
+        }
+        // A file rewritten rather than appended to is read whole, the epoch filter drops what is known
+        try (RandomAccessFile file = new RandomAccessFile(inputFile, "r")) {
+            file.seek(offset - 1);
+            return file.read() == '\n' ? offset : 0;
+        }
+    }
+
+    // Latest header of each system seen by an update
+    private static class HeaderTracker implements TabLineConsumer {
+        private final Map<String, String> headers = new LinkedHashMap<>();
+
+        @Override
+        public void onHeader(TabLineCursor header) {
+            if (header.fieldCount() >= 2) {
+                headers.put(header.field(1), header.line().toString());
+            }
+        }
+
+        @Override
+        public void onObservation(TabLineCursor line) {
+        }
+    }
+
+    private static Options parseOptions(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-input":
+                    options.inputDir = new File(BatchRunner.getValue(args, ++i, arg));
+                    break;
+                case "-output":
+                    options.outputDir = new File(BatchRunner.getValue(args, ++i, arg));
+                    break;
+                case GfzrnxRunner.TYPES_PREFIX:
+                    options.obsTypes = Arrays.asList(BatchRunner.getValue(args, ++i, arg).split(","));
+                    break;
+                case GfzrnxRunner.SAT_SYS_PREFIX:
+                    options.satSystems = BatchRunner.splitSystems(BatchRunner.getValue(args, ++i, arg));
+                    break;
+                case "-io_threads":
+                    options.ioThreads = BatchRunner.parsePositive(BatchRunner.getValue(args, ++i, arg), arg);
+                    break;
+                case "-settle_ms":
+                    options.settleMillis = BatchRunner.parsePositive(BatchRunner.getValue(args, ++i, arg), arg);
+                    break;
+                case "-gzip":
+                    options.gzip = true;
+                    break;
+                case "-native":
+                    options.nativeReader = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+            }
+        }
+        if (options.inputDir == null) {
+            throw new IllegalArgumentException("Не задан параметр -input");
+        }
+        if (options.outputDir == null) {
+            throw new IllegalArgumentException("Не задан параметр -output");
+        }
+        return options;
+    }
+}
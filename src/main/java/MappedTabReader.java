@@ -0,0 +1,147 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+// Reads a tab file through a memory mapped window that rolls forward, so files over
+// 2 GB work as well. Newlines are searched eight bytes at a time. Lines end at "\n"
+// or "\r\n" and are returned as a ByteLine that is reused for the next line.
+// A buffered reader reads the windows into a heap buffer instead, see buffered().
+public class MappedTabReader implements TabLineSource, Closeable {
+
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+    public static final int BUFFERED_WINDOW_SIZE = 1024 * 1024;
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long NEWLINES = ONES * '\n';
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int windowSize;
+    private final boolean mapped;
+    private final ByteLine line = new ByteLine();
+    private ByteBuffer window;
+    // File offset of the window and read position inside it
+    private long windowStart;
+    private int position;
+
+    public MappedTabReader(File file) throws IOException {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    public MappedTabReader(File file, int windowSize) throws IOException {
+        this(file, windowSize, 0);
+    }
+
+    // Starts reading at a byte offset, which must be a line start
+    public MappedTabReader(File file, int windowSize, long offset) throws IOException {
+        this(file, windowSize, offset, true);
+    }
+
+    private MappedTabReader(File file, int windowSize, long offset, boolean mapped) throws IOException {
+        if (windowSize < 8) {
+            throw new IllegalArgumentException("Window size is too small: " + windowSize);
+        }
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+        this.mapped = mapped;
+        if (offset < 0 || offset > fileSize) {
+            channel.close();
+            throw new IOException("Смещение " + offset + " за пределами файла " + file.getName());
+        }
+        map(offset, windowSize);
+    }
+
+    // A mapping is only released when it is garbage collected, and on Windows the file cannot be
+    // deleted until then. Temporary files deleted after reading and watched inputs are read so.
+    public static MappedTabReader buffered(File file, long offset) throws IOException {
+        return new MappedTabReader(file, BUFFERED_WINDOW_SIZE, offset, false);
+    }
+
+    private void map(long start, long size) throws IOException {
+        windowStart = start;
+        int length = (int) Math.min(size, fileSize - start);
+        if (mapped) {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        } else {
+            if (window == null || window.capacity() < length) {
+                window = ByteBuffer.allocate(length);
+            }
+            window.clear().limit(length);
+            while (window.hasRemaining()) {
+                if (channel.read(window, start + window.position()) == -1) {
+                    throw new IOException("Файл стал короче во время чтения");
+                }
+            }
+            window.flip();
+        }
+        window.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Nullable
+    @Override
+    public CharSequence readLine() throws IOException {
+        int lineStart = position;
+        int searchFrom = position;
+        int newline;
+        while ((newline = findNewline(searchFrom)) == -1) {
+            long fileOffset = windowStart + lineStart;
+            if (windowStart + window.limit() == fileSize) {
+                if (lineStart == window.limit()) {
+                    return null;
+                }
+                // Last line without a line break
+                position = window.limit();
+                return toLine(lineStart, window.limit());
+            }
+            // The line continues past the window: map again from its start, larger if it fills the whole window
+            int scanned = window.limit() - lineStart;
+            long size = lineStart == 0 ? (long) window.limit() * 2 : windowSize;
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Строка длиннее " + Integer.MAX_VALUE + " байт");
+            }
+            map(fileOffset, Math.max(size, scanned + 8L));
+            lineStart = 0;
+            searchFrom = scanned;
+        }
+        position = newline + 1;
+        return toLine(lineStart, newline);
+    }
+
+    private ByteLine toLine(int start, int end) {
+        if (end > start && window.get(end - 1) == '\r') {
+            end--;
+        }
+        return line.set(window, start, end - start);
+    }
+
+    private int findNewline(int from) {
+        int limit = window.limit();
+        int i = from;
+        for (; i + Long.BYTES <= limit; i += Long.BYTES) {
+            long word = window.getLong(i) ^ NEWLINES;
+            long found = (word - ONES) & ~word & HIGH_BITS;
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < limit; i++) {
+            if (window.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
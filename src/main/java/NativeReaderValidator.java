@@ -0,0 +1,245 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Checks RinexObservationReader against gfzrnx on a corpus of observation files:
+// RinexApplication -validate -input <file|dir|glob> [-max_diffs 10]
+// Both tab outputs are compared epoch by epoch. Rows are matched by satellite and values
+// by observation type, so the order of rows and columns does not matter and a missing
+// value equals a column left out. Exit code 0 when every file gives the same values.
+public class NativeReaderValidator {
+
+    public static final String VALIDATE_FLAG = "-validate";
+
+    private static final int DEFAULT_MAX_DIFFS = 10;
+    private static final int PRN_INDEX = 4;
+
+    private final String executable;
+    private final int maxDiffs;
+
+    public NativeReaderValidator(String executable, int maxDiffs) {
+        this.executable = executable;
+        this.maxDiffs = maxDiffs;
+    }
+
+    public static int run(String[] args) {
+        String input = null;
+        int maxDiffs = DEFAULT_MAX_DIFFS;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "-input":
+                        input = BatchRunner.getValue(args, ++i, arg);
+                        break;
+                    case "-max_diffs":
+                        maxDiffs = BatchRunner.parsePositive(BatchRunner.getValue(args, ++i, arg), arg);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+                }
+            }
+            if (input == null) {
+                throw new IllegalArgumentException("Не задан параметр -input");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Использование: " + VALIDATE_FLAG + " -input <файл|папка|шаблон> [-max_diffs N]");
+            return 2;
+        }
+        List<File> inputs;
+        try {
+            inputs = new ArrayList<>(BatchRunner.findInputs(input));
+        } catch (IOException e) {
+            System.err.println("Не удалось прочитать " + input + ": " + e.getMessage());
+            return 2;
+        }
+        inputs.removeIf(ConversionJob::isTabFile);
+        if (inputs.isEmpty()) {
+            System.err.println("Не найдено файлов RINEX: " + input);
+            return 2;
+        }
+        String executable = GfzrnxRunner.findExecutable();
+        if (executable == null) {
+            System.err.println("EXE-файл программы GFZRNX не найден");
+            return 2;
+        }
+        NativeReaderValidator validator = new NativeReaderValidator(executable, maxDiffs);
+        int failed = 0;
+        for (File file : inputs) {
+            if (!validator.validate(file)) {
+                failed++;
+            }
+        }
+        System.out.printf(Locale.US, "Проверено файлов: %d, с расхождениями: %d%n", inputs.size(), failed);
+        return failed == 0 ? 0 : 1;
+    }
+
+    // Prints the result for the file, true if both readers give the same values
+    public boolean validate(File file) {
+        List<String> diffs = new ArrayList<>();
+        long[] counts = new long[2];
+        try {
+            compare(file, diffs, counts);
+        } catch (IOException | RuntimeException e) {
+            System.out.printf(Locale.US, "ОШИБКА %s: %s%n", file.getPath(), e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        if (counts[1] == 0) {
+            System.out.printf(Locale.US, "СОВПАДАЕТ %s: %d эпох%n", file.getPath(), counts[0]);
+            return true;
+        }
+        System.out.printf(Locale.US, "РАСХОЖДЕНИЯ %s: %d из %d эпох%n", file.getPath(), counts[1], counts[0]);
+        diffs.forEach(x -> System.out.println("    " + x));
+        return false;
+    }
+
+    // counts: epochs seen, epochs that differ
+    private void compare(File file, List<String> diffs, long[] counts) throws IOException, InterruptedException {
+        GfzrnxRunner.Execution execution = GfzrnxRunner.start(GfzrnxRunner.getCommand(executable,
+                RinexInput.isEncoded(file) ? null : file.getAbsolutePath(), List.of()));
+        Process process = execution.getProcess();
+        try (BufferedReader gfzrnxOutput = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.US_ASCII));
+             RinexObservationReader nativeReader = new RinexObservationReader(file)) {
+            RinexInput.Feeder feeder = RinexInput.isEncoded(file) ? RinexInput.Feeder.start(file, process) : null;
+            EpochReader expected = new EpochReader(gfzrnxOutput::readLine);
+            EpochReader actual = new EpochReader(nativeReader);
+            Epoch left = expected.next();
+            Epoch right = actual.next();
+            while (left != null || right != null) {
+                counts[0]++;
+                int order = left == null ? 1 : right == null ? -1 : left.time.compareTo(right.time);
+                if (order < 0) {
+                    addDiff(diffs, counts, left.time + ": эпоха только в выводе GFZRNX");
+                    left = expected.next();
+                } else if (order > 0) {
+                    addDiff(diffs, counts, right.time + ": эпоха только во встроенном разборе");
+                    right = actual.next();
+                } else {
+                    if (!left.values.equals(right.values)) {
+                        addDiff(diffs, counts, describe(left, right));
+                    }
+                    left = expected.next();
+                    right = actual.next();
+                }
+            }
+            int exitCode = execution.waitFor();
+            if (feeder != null) {
+                feeder.await();
+            }
+            if (exitCode != 0) {
+                throw new IOException("GFZRNX завершился с кодом " + exitCode);
+            }
+        } finally {
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private void addDiff(List<String> diffs, long[] counts, String diff) {
+        counts[1]++;
+        if (diffs.size() < maxDiffs) {
+            diffs.add(diff);
+        }
+    }
+
+    // First differing value of the epoch
+    private static String describe(Epoch expected, Epoch actual) {
+        TreeSet<String> keys = new TreeSet<>(expected.values.keySet());
+        keys.addAll(actual.values.keySet());
+        for (String key : keys) {
+            String left = expected.values.get(key);
+            String right = actual.values.get(key);
+            if (!Objects.equals(left, right)) {
+                return String.format("%s %s: GFZRNX %s, встроенный разбор %s", expected.time, key,
+                        left == null ? "нет" : left, right == null ? "нет" : right);
+            }
+        }
+        return expected.time;
+    }
+
+    private static final class Epoch {
+        final String time;
+        // "G01 C1C" -> value, null values left out
+        final Map<String, String> values = new TreeMap<>();
+
+        Epoch(String time) {
+            this.time = time;
+        }
+    }
+
+    // Groups the rows of a tab output into epochs; type names come from the header of each system
+    private static final class EpochReader {
+        private final TabLineSource source;
+        private final TabLineCursor cursor = new TabLineCursor();
+        private final Map<String, List<String>> types = new HashMap<>();
+        @Nullable
+        private String pending;
+
+        EpochReader(TabLineSource source) {
+            this.source = source;
+        }
+
+        @Nullable
+        Epoch next() throws IOException {
+            Epoch epoch = null;
+            while (true) {
+                String line = pending;
+                pending = null;
+                if (line == null) {
+                    CharSequence read = source.readLine();
+                    if (read == null) {
+                        return epoch;
+                    }
+                    line = read.toString();
+                }
+                cursor.reset(line);
+                if (cursor.fieldCount() == 0) {
+                    continue;
+                }
+                if (line.startsWith("#")) {
+                    List<String> tokens = TabFormat.getTokens(line);
+                    types.put(cursor.field(1), tokens.subList(PRN_INDEX + 1, tokens.size()));
+                    continue;
+                }
+                String time = cursor.field(TabFormat.DATE_INDEX) + " " + cursor.field(TabFormat.TIME_INDEX);
+                if (epoch == null) {
+                    epoch = new Epoch(time);
+                } else if (!epoch.time.equals(time)) {
+                    pending = line;
+                    return epoch;
+                }
+                addRow(epoch);
+            }
+        }
+
+        private void addRow(Epoch epoch) {
+            List<String> names = types.get(cursor.field(1));
+            if (names == null) {
+                throw new RuntimeException("Нет заголовка системы для строки: " + cursor.line());
+            }
+            String satellite = cursor.field(PRN_INDEX);
+            for (int i = PRN_INDEX + 1; i < cursor.fieldCount() && i - PRN_INDEX - 1 < names.size(); i++) {
+                if (!cursor.isNull(i)) {
+                    epoch.values.put(satellite + " " + names.get(i - PRN_INDEX - 1), cursor.field(i));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,656 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Parsed gfzrnx tab output of an input file, kept on disk so a re-run with other
+// system or grouping choices does not start gfzrnx again. Entries are keyed by the
+// SHA-256 of the input and the requested observation types; the least recently
+// used entries are deleted once the directory grows over maxBytes.
+//
+// An entry is a sequence of row groups. Each group stores its rows column by column:
+// satellite ids (Constellation slots, other satellites from a dictionary), epoch
+// times in 100 ns ticks, field counts, then per data column a scale, a null bitmap
+// for 9999999999.999 and the packed non-null values as doubles. Header lines are
+// kept verbatim with the row they precede. Output lines are rebuilt with single
+// spaces between fields. An entry is only committed if every field is rebuilt to
+// exactly its original text.
+public class ObservationCache {
+
+    public static final long DEFAULT_MAX_BYTES = 2L * 1024 * 1024 * 1024;
+
+    private static final String SUFFIX = ".obc";
+    private static final int MAGIC = 0x4F424331;
+    private static final int VERSION = 1;
+    private static final int ROW_GROUP_SIZE = 4096;
+    private static final int GROUP = 1;
+    private static final int END = 0;
+
+    private static final long TICKS_PER_SECOND = 10_000_000L;
+    private static final int TIME_LENGTH = 16;
+    private static final int MAX_SCALE = 9;
+    private static final int MAX_DIGITS = 15;
+    private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final File directory;
+    private final long maxBytes;
+
+    public ObservationCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    public static File getDefaultDirectory() {
+        return new File(System.getProperty("user.home"), ".rinex-gui" + File.separator + "cache");
+    }
+
+    public String getKey(File inputFile, @Nullable Collection<String> obsTypes) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream input = new FileInputStream(inputFile)) {
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        String types = "*";
+        if (obsTypes != null) {
+            TreeSet<String> sorted = new TreeSet<>();
+            obsTypes.forEach(x -> sorted.add(x.toUpperCase()));
+            types = String.join(",", sorted);
+        }
+        digest.update(("\u0000" + types + "\u0000" + VERSION).getBytes(StandardCharsets.UTF_8));
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return key.toString();
+    }
+
+    @Nullable
+    public Reader open(String key) throws IOException {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        Reader reader;
+        try {
+            reader = new Reader(file);
+        } catch (IOException e) {
+            // Deleted by another run or not a cache entry
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return reader;
+    }
+
+    public EntryWriter create(String key, FormatType type) throws IOException {
+        directory.mkdirs();
+        File temp = File.createTempFile(key, ".tmp", directory);
+        return new EntryWriter(temp, getFile(key), type.getSatNumIndex());
+    }
+
+    private File getFile(String key) {
+        return new File(directory, key + SUFFIX);
+    }
+
+    private synchronized void evict() {
+        File[] entries = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (entries == null) {
+            return;
+        }
+        long total = 0;
+        for (File entry : entries) {
+            total += entry.length();
+        }
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < entries.length - 1 && total > maxBytes; i++) {
+            long length = entries[i].length();
+            if (entries[i].delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    // Records the tab lines of one conversion; commit() publishes the entry
+    public class EntryWriter implements TabLineConsumer {
+
+        private final File temp;
+        private final File target;
+        private final int satNumIndex;
+        private final DataOutputStream output;
+        private boolean valid = true;
+        private boolean finished;
+        private boolean closed;
+
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final List<String[]> newSatellites = new ArrayList<>();
+        private final List<Integer> newSatelliteIds = new ArrayList<>();
+        private final List<String> headers = new ArrayList<>();
+        private final List<Integer> headerRows = new ArrayList<>();
+        private final int[] satellites = new int[ROW_GROUP_SIZE];
+        private final long[] ticks = new long[ROW_GROUP_SIZE];
+        private final byte[] fieldCounts = new byte[ROW_GROUP_SIZE];
+        private double[][] values = new double[0][];
+        private long[][] nulls = new long[0][];
+        private int[] valueCounts = new int[0];
+        private int[] scales = new int[0];
+        private int columnCount;
+        private int rows;
+
+        private EntryWriter(File temp, File target, int satNumIndex) throws IOException {
+            this.temp = temp;
+            this.target = target;
+            this.satNumIndex = satNumIndex;
+            this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(satNumIndex);
+        }
+
+        @Override
+        public void onHeader(TabLineCursor header) throws IOException {
+            if (!valid) {
+                return;
+            }
+            headers.add(header.line().toString());
+            headerRows.add(rows);
+        }
+
+        @Override
+        public void onObservation(TabLineCursor line) throws IOException {
+            if (!valid) {
+                return;
+            }
+            int fieldCount = line.fieldCount();
+            int dataFields = fieldCount - satNumIndex - 1;
+            if (dataFields < 0 || dataFields > Byte.MAX_VALUE) {
+                valid = false;
+                return;
+            }
+            long time = parseTicks(line);
+            if (time == Long.MIN_VALUE) {
+                valid = false;
+                return;
+            }
+            if (dataFields > columnCount) {
+                growColumns(dataFields);
+            }
+            for (int column = 0; column < dataFields; column++) {
+                if (!addValue(line, satNumIndex + 1 + column, column)) {
+                    valid = false;
+                    return;
+                }
+            }
+            satellites[rows] = getSatelliteId(line);
+            ticks[rows] = time;
+            fieldCounts[rows] = (byte) dataFields;
+            rows++;
+            if (rows == ROW_GROUP_SIZE) {
+                writeGroup();
+            }
+        }
+
+        private int getSatelliteId(TabLineCursor line) {
+            Constellation constellation = satNumIndex == 4 && line.fieldEquals(0, "OBS") ? Constellation.ofField(line, 1) : null;
+            if (constellation != null) {
+                int slot = Constellation.slotOfField(line, satNumIndex, constellation);
+                if (slot != -1) {
+                    return slot;
+                }
+            }
+            String[] prefix = new String[satNumIndex - 1];
+            prefix[0] = line.field(0);
+            prefix[1] = line.field(1);
+            for (int i = 4; i <= satNumIndex; i++) {
+                prefix[i - 2] = line.field(i);
+            }
+            String key = String.join(" ", prefix);
+            Integer id = dictionary.get(key);
+            if (id == null) {
+                id = Constellation.SATELLITE_SLOTS + dictionary.size();
+                dictionary.put(key, id);
+                newSatellites.add(prefix);
+                newSatelliteIds.add(id);
+            }
+            return id;
+        }
+
+        private void growColumns(int count) {
+            values = Arrays.copyOf(values, count);
+            nulls = Arrays.copyOf(nulls, count);
+            valueCounts = Arrays.copyOf(valueCounts, count);
+            scales = Arrays.copyOf(scales, count);
+            for (int i = columnCount; i < count; i++) {
+                values[i] = new double[ROW_GROUP_SIZE];
+                nulls[i] = new long[ROW_GROUP_SIZE / 64];
+                scales[i] = -1;
+            }
+            columnCount = count;
+        }
+
+        // False if the field would not be rebuilt to the same text
+        private boolean addValue(TabLineCursor line, int field, int column) {
+            if (line.isNull(field)) {
+                nulls[column][rows >>> 6] |= 1L << rows;
+                return true;
+            }
+            int start = line.fieldStart(field);
+            int end = line.fieldEnd(field);
+            boolean negative = line.text().charAt(start) == '-';
+            int i = negative ? start + 1 : start;
+            long unscaled = 0;
+            int digits = 0;
+            int scale = -1;
+            int integerStart = i;
+            for (; i < end; i++) {
+                char c = line.text().charAt(i);
+                if (c == '.' && scale == -1) {
+                    scale = 0;
+                    if (i == integerStart) {
+                        return false;
+                    }
+                    continue;
+                }
+                if (c < '0' || c > '9' || ++digits > MAX_DIGITS) {
+                    return false;
+                }
+                unscaled = unscaled * 10 + (c - '0');
+                if (scale != -1) {
+                    scale++;
+                }
+            }
+            if (scale == -1) {
+                scale = 0;
+                if (i == integerStart) {
+                    return false;
+                }
+            } else if (scale == 0 || scale > MAX_SCALE) {
+                return false;
+            }
+            int integerDigits = digits - scale;
+            if (integerDigits > 1 && line.text().charAt(integerStart) == '0') {
+                return false;
+            }
+            if (negative && unscaled == 0) {
+                return false;
+            }
+            if (scales[column] == -1) {
+                scales[column] = scale;
+            } else if (scales[column] != scale) {
+                return false;
+            }
+            long signed = negative ? -unscaled : unscaled;
+            double value = (double) signed / POWERS_OF_TEN[scale];
+            if (Math.round(value * POWERS_OF_TEN[scale]) != signed) {
+                return false;
+            }
+            values[column][valueCounts[column]++] = value;
+            return true;
+        }
+
+        private void writeGroup() throws IOException {
+            output.writeByte(GROUP);
+            output.writeInt(rows);
+            output.writeInt(newSatellites.size());
+            for (int i = 0; i < newSatellites.size(); i++) {
+                output.writeInt(newSatelliteIds.get(i));
+                for (String field : newSatellites.get(i)) {
+                    writeString(field);
+                }
+            }
+            newSatellites.clear();
+            newSatelliteIds.clear();
+            output.writeInt(headers.size());
+            for (int i = 0; i < headers.size(); i++) {
+                output.writeInt(headerRows.get(i));
+                writeString(headers.get(i));
+            }
+            headers.clear();
+            headerRows.clear();
+            for (int i = 0; i < rows; i++) {
+                output.writeShort(satellites[i] <= Short.MAX_VALUE ? satellites[i] : -1);
+                if (satellites[i] > Short.MAX_VALUE) {
+                    output.writeInt(satellites[i]);
+                }
+            }
+            for (int i = 0; i < rows; i++) {
+                output.writeLong(ticks[i]);
+            }
+            output.write(fieldCounts, 0, rows);
+            output.writeInt(columnCount);
+            for (int column = 0; column < columnCount; column++) {
+                output.writeByte(scales[column]);
+                long[] columnNulls = nulls[column];
+                for (int i = 0; i < (rows + 63) >>> 6; i++) {
+                    output.writeLong(columnNulls[i]);
+                }
+                output.writeInt(valueCounts[column]);
+                double[] columnValues = values[column];
+                for (int i = 0; i < valueCounts[column]; i++) {
+                    output.writeDouble(columnValues[i]);
+                }
+                Arrays.fill(columnNulls, 0);
+                valueCounts[column] = 0;
+                scales[column] = -1;
+            }
+            rows = 0;
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (!valid) {
+                return;
+            }
+            if (rows > 0 || !headers.isEmpty()) {
+                writeGroup();
+            }
+            output.writeByte(END);
+            finished = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            output.close();
+            if (!finished || !valid) {
+                Files.deleteIfExists(temp.toPath());
+            }
+        }
+
+        // Publishes the entry, false if some line could not be stored exactly
+        public boolean commit() throws IOException {
+            close();
+            if (!finished || !valid) {
+                return false;
+            }
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            evict();
+            return true;
+        }
+
+        public void discard() throws IOException {
+            close();
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    // Epoch of the line in 100 ns ticks, Long.MIN_VALUE if the date or time is
+    // not in the fixed gfzrnx layout YYYY-MM-DD HH:MM:SS.fffffff
+    private static long parseTicks(TabLineCursor line) {
+        if (line.fieldLength(TabFormat.TIME_INDEX) != TIME_LENGTH || line.charAt(TabFormat.TIME_INDEX, 8) != '.') {
+            return Long.MIN_VALUE;
+        }
+        long fraction = 0;
+        for (int i = 9; i < TIME_LENGTH; i++) {
+            char c = line.charAt(TabFormat.TIME_INDEX, i);
+            if (c < '0' || c > '9') {
+                return Long.MIN_VALUE;
+            }
+            fraction = fraction * 10 + (c - '0');
+        }
+        if (line.fieldLength(TabFormat.DATE_INDEX) != 10) {
+            return Long.MIN_VALUE;
+        }
+        for (int i = 0; i < 10; i++) {
+            char c = line.charAt(TabFormat.DATE_INDEX, i);
+            if (i != 4 && i != 7 && (c < '0' || c > '9')) {
+                return Long.MIN_VALUE;
+            }
+        }
+        try {
+            return TabFormat.getEpochSecond(line) * TICKS_PER_SECOND + fraction;
+        } catch (RuntimeException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    // Replays an entry as tab lines
+    public static class Reader implements TabLineSource, Closeable {
+
+        private final DataInputStream input;
+        private final int satNumIndex;
+        private final Map<Integer, String[]> dictionary = new HashMap<>();
+        private final StringBuilder line = new StringBuilder();
+        private int rows;
+        private int row;
+        private int[] headerRows = new int[0];
+        private String[] headers = new String[0];
+        private int nextHeader;
+        private int[] satellites = new int[0];
+        private long[] ticks = new long[0];
+        private byte[] fieldCounts = new byte[0];
+        private int columnCount;
+        private int[] scales = new int[0];
+        private long[][] nulls = new long[0][];
+        private double[][] values = new double[0][];
+        private int[] valuePositions = new int[0];
+        private boolean ended;
+        // Date and time text of the last rebuilt epoch
+        private long lastTicks = Long.MIN_VALUE;
+        private String lastEpoch;
+
+        private Reader(File file) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+            try {
+                if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                    throw new IOException("Не файл кэша: " + file);
+                }
+                satNumIndex = input.readInt();
+            } catch (IOException e) {
+                input.close();
+                throw e;
+            }
+        }
+
+        @Nullable
+        @Override
+        public CharSequence readLine() throws IOException {
+            while (true) {
+                if (nextHeader < headers.length && headerRows[nextHeader] == row) {
+                    return headers[nextHeader++];
+                }
+                if (row < rows) {
+                    return buildRow(row++);
+                }
+                if (ended || !readGroup()) {
+                    return null;
+                }
+            }
+        }
+
+        private boolean readGroup() throws IOException {
+            int tag = input.readByte();
+            if (tag == END) {
+                ended = true;
+                return false;
+            }
+            if (tag != GROUP) {
+                throw new IOException("Поврежденный файл кэша");
+            }
+            rows = input.readInt();
+            row = 0;
+            int newSatellites = input.readInt();
+            for (int i = 0; i < newSatellites; i++) {
+                int id = input.readInt();
+                String[] prefix = new String[satNumIndex - 1];
+                for (int j = 0; j < prefix.length; j++) {
+                    prefix[j] = readString();
+                }
+                dictionary.put(id, prefix);
+            }
+            int headerCount = input.readInt();
+            headerRows = new int[headerCount];
+            headers = new String[headerCount];
+            for (int i = 0; i < headerCount; i++) {
+                headerRows[i] = input.readInt();
+                headers[i] = readString();
+            }
+            nextHeader = 0;
+            if (satellites.length < rows) {
+                satellites = new int[rows];
+                ticks = new long[rows];
+                fieldCounts = new byte[rows];
+            }
+            for (int i = 0; i < rows; i++) {
+                int id = input.readShort();
+                satellites[i] = id == -1 ? input.readInt() : id;
+            }
+            for (int i = 0; i < rows; i++) {
+                ticks[i] = input.readLong();
+            }
+            input.readFully(fieldCounts, 0, rows);
+            columnCount = input.readInt();
+            if (scales.length < columnCount) {
+                scales = new int[columnCount];
+                nulls = Arrays.copyOf(nulls, columnCount);
+                values = Arrays.copyOf(values, columnCount);
+                valuePositions = new int[columnCount];
+            }
+            for (int column = 0; column < columnCount; column++) {
+                scales[column] = input.readByte();
+                int words = (rows + 63) >>> 6;
+                if (nulls[column] == null || nulls[column].length < words) {
+                    nulls[column] = new long[words];
+                }
+                for (int i = 0; i < words; i++) {
+                    nulls[column][i] = input.readLong();
+                }
+                int count = input.readInt();
+                if (values[column] == null || values[column].length < count) {
+                    values[column] = new double[Math.max(count, ROW_GROUP_SIZE)];
+                }
+                for (int i = 0; i < count; i++) {
+                    values[column][i] = input.readDouble();
+                }
+                valuePositions[column] = 0;
+            }
+            return true;
+        }
+
+        private CharSequence buildRow(int index) {
+            line.setLength(0);
+            int satellite = satellites[index];
+            String[] prefix = satellite < Constellation.SATELLITE_SLOTS ? null : dictionary.get(satellite);
+            if (prefix == null) {
+                line.append("OBS ").append(Constellation.ofSlot(satellite).getLetter());
+            } else {
+                line.append(prefix[0]).append(' ').append(prefix[1]);
+            }
+            line.append(' ').append(getEpoch(ticks[index]));
+            if (prefix == null) {
+                line.append(' ').append(Constellation.satelliteName(satellite));
+            } else {
+                for (int i = 2; i < prefix.length; i++) {
+                    line.append(' ').append(prefix[i]);
+                }
+            }
+            int dataFields = fieldCounts[index];
+            for (int column = 0; column < dataFields; column++) {
+                line.append(' ');
+                if ((nulls[column][index >>> 6] & (1L << index)) != 0) {
+                    line.append(TabFormat.NULL_VALUE);
+                } else {
+                    appendDecimal(values[column][valuePositions[column]++], scales[column]);
+                }
+            }
+            return line;
+        }
+
+        private String getEpoch(long time) {
+            if (time == lastTicks) {
+                return lastEpoch;
+            }
+            long seconds = Math.floorDiv(time, TICKS_PER_SECOND);
+            long fraction = Math.floorMod(time, TICKS_PER_SECOND);
+            LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(seconds, 86400));
+            int secondOfDay = Math.floorMod(seconds, 86400);
+            StringBuilder epoch = new StringBuilder(27);
+            appendPadded(epoch, date.getYear(), 4).append('-');
+            appendPadded(epoch, date.getMonthValue(), 2).append('-');
+            appendPadded(epoch, date.getDayOfMonth(), 2).append(' ');
+            appendPadded(epoch, secondOfDay / 3600, 2).append(':');
+            appendPadded(epoch, secondOfDay / 60 % 60, 2).append(':');
+            appendPadded(epoch, secondOfDay % 60, 2).append('.');
+            appendPadded(epoch, fraction, 7);
+            lastTicks = time;
+            lastEpoch = epoch.toString();
+            return lastEpoch;
+        }
+
+        private static StringBuilder appendPadded(StringBuilder builder, long value, int width) {
+            String digits = Long.toString(value);
+            for (int i = digits.length(); i < width; i++) {
+                builder.append('0');
+            }
+            return builder.append(digits);
+        }
+
+        private void appendDecimal(double value, int scale) {
+            long unscaled = Math.round(value * POWERS_OF_TEN[scale]);
+            if (unscaled < 0) {
+                line.append('-');
+                unscaled = -unscaled;
+            }
+            line.append(unscaled / POWERS_OF_TEN[scale]);
+            if (scale > 0) {
+                line.append('.');
+                appendPadded(line, unscaled % POWERS_OF_TEN[scale], scale);
+            }
+        }
+
+        private String readString() throws IOException {
+            byte[] bytes = new byte[input.readInt()];
+            input.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
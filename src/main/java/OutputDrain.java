@@ -0,0 +1,76 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+// Reads the messages of a process on a daemon thread into a ring buffer that keeps
+// the last bytes only. The process never stalls on a full pipe, nothing is printed
+// while hundreds of conversions run, and a failed run can still show its last lines.
+public final class OutputDrain {
+
+    public static final int DEFAULT_CAPACITY = 16 * 1024;
+
+    private static final int READ_SIZE = 4096;
+
+    private final byte[] ring;
+    // Bytes drained so far; the ring holds the last ring.length of them
+    private long total;
+    private final Thread thread;
+
+    private OutputDrain(InputStream stream, String name, int capacity) {
+        ring = new byte[capacity];
+        thread = new Thread(() -> drain(stream), name);
+        thread.setDaemon(true);
+    }
+
+    public static OutputDrain start(InputStream stream, String name, int capacity) {
+        OutputDrain drain = new OutputDrain(stream, name, capacity);
+        drain.thread.start();
+        return drain;
+    }
+
+    private void drain(InputStream stream) {
+        byte[] buffer = new byte[READ_SIZE];
+        try (stream) {
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                append(buffer, read);
+            }
+        } catch (IOException ignored) {
+            // The process was killed, what was read is kept
+        }
+    }
+
+    private synchronized void append(byte[] buffer, int length) {
+        // Only the last ring.length bytes of a larger read can be kept
+        int offset = Math.max(0, length - ring.length);
+        total += offset;
+        for (int i = offset; i < length; ) {
+            int position = (int) (total % ring.length);
+            int count = Math.min(length - i, ring.length - position);
+            System.arraycopy(buffer, i, ring, position, count);
+            i += count;
+            total += count;
+        }
+    }
+
+    // Output kept after the process closed it; cut at a line start when the beginning was overwritten
+    public String getTail() throws InterruptedException {
+        thread.join();
+        synchronized (this) {
+            int size = (int) Math.min(total, ring.length);
+            byte[] tail = new byte[size];
+            int start = (int) ((total - size) % ring.length);
+            int first = Math.min(size, ring.length - start);
+            System.arraycopy(ring, start, tail, 0, first);
+            System.arraycopy(ring, 0, tail, first, size - first);
+            int from = 0;
+            if (total > ring.length) {
+                while (from < size && tail[from] != '\n') {
+                    from++;
+                }
+                from = Math.min(size, from + 1);
+            }
+            return new String(tail, from, size - from, Charset.defaultCharset());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// Last epoch written to each output of a live folder, see LiveCheckpoint. A grouped file is
+// named by its path relative to the folder, a system of the counter file by the file name and
+// the system, componentCounter.txt:G. Every row is checked against the epoch of its own output,
+// so inputs covering the same time for other satellites or systems still reach their files.
+// Consumers look the epochs up as they meet an output and put the new ones on finish.
+public class OutputEpochs {
+
+    private final Map<String, Epoch> epochs = new HashMap<>();
+    private boolean keepResumeEpoch;
+
+    // DATE and TIME fields of a tab row; both have a fixed width, so epochs compare as text
+    public static final class Epoch {
+        final String date;
+        final String time;
+
+        public Epoch(String date, String time) {
+            this.date = date;
+            this.time = time;
+        }
+
+        public static Epoch of(TabLineCursor line) {
+            return new Epoch(line.field(TabFormat.DATE_INDEX), line.field(TabFormat.TIME_INDEX));
+        }
+
+        // The inverse of toString()
+        public static Epoch parse(String text) {
+            int space = text.indexOf(' ');
+            if (space == -1) {
+                throw new IllegalArgumentException("Эпоха неправильного формата: " + text);
+            }
+            return new Epoch(text.substring(0, space), text.substring(space + 1));
+        }
+
+        public boolean matches(TabLineCursor line) {
+            return line.fieldEquals(TabFormat.DATE_INDEX, date) && line.fieldEquals(TabFormat.TIME_INDEX, time);
+        }
+
+        // Sign of the epoch of `line` compared to this one
+        int compareLine(TabLineCursor line) {
+            int compared = line.compareField(TabFormat.DATE_INDEX, date);
+            return compared != 0 ? compared : line.compareField(TabFormat.TIME_INDEX, time);
+        }
+
+        public boolean isAfter(Epoch other) {
+            int compared = date.compareTo(other.date);
+            return compared != 0 ? compared > 0 : time.compareTo(other.time) > 0;
+        }
+
+        @Override
+        public String toString() {
+            return date + " " + time;
+        }
+    }
+
+    public static String getCounterOutput(String counterFileName, String system) {
+        return counterFileName + ":" + system;
+    }
+
+    // Rows of the resume epoch itself are kept, for a tab input read on from where it stopped:
+    // they were appended to it after that epoch was written
+    public OutputEpochs setKeepResumeEpoch(boolean keepResumeEpoch) {
+        this.keepResumeEpoch = keepResumeEpoch;
+        return this;
+    }
+
+    @Nullable
+    public Epoch get(String output) {
+        return epochs.get(output);
+    }
+
+    // Keeps the later epoch of an output
+    public void put(String output, Epoch epoch) {
+        Epoch previous = epochs.get(output);
+        if (previous == null || epoch.isAfter(previous)) {
+            epochs.put(output, epoch);
+        }
+    }
+
+    public Map<String, Epoch> getAll() {
+        return Collections.unmodifiableMap(epochs);
+    }
+
+    // True for rows after `resume`, the epoch of their output; null when nothing was written to it
+    public boolean isNew(@Nullable Epoch resume, TabLineCursor line) {
+        if (resume == null || line.fieldCount() <= TabFormat.TIME_INDEX) {
+            // Malformed rows are left to the consumers to report
+            return true;
+        }
+        int compared = resume.compareLine(line);
+        return compared > 0 || compared == 0 && keepResumeEpoch;
+    }
+}
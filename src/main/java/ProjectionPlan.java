@@ -0,0 +1,94 @@
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// Columns of one system's tab lines that end up in the grouped files, resolved
+// once from the header. Observation types are matched by prefix the way gfzrnx
+// -obs_types does, so "C1" selects C1C, C1W and so on. Without a type selection
+// every column from the data index to the end of the line is kept.
+public final class ProjectionPlan {
+
+    private final int timeIndex;
+    private final int dataStartIndex;
+    @Nullable
+    private final int[] columns;
+    private final String formattedHeader;
+
+    private ProjectionPlan(int timeIndex, int dataStartIndex, @Nullable int[] columns, String formattedHeader) {
+        this.timeIndex = timeIndex;
+        this.dataStartIndex = dataStartIndex;
+        this.columns = columns;
+        this.formattedHeader = formattedHeader;
+    }
+
+    public static ProjectionPlan fromHeader(String header, @Nullable Collection<String> obsTypes) {
+        TabFormat.ColumnIndices indices = TabFormat.getHeaderIndices(header);
+        if (obsTypes == null) {
+            return new ProjectionPlan(indices.timeIndex, indices.dataStartIndex, null,
+                    TabFormat.getFormattedHeader(header, indices));
+        }
+        List<String> tokens = TabFormat.getTokens(header);
+        List<Integer> selected = new ArrayList<>();
+        for (int i = indices.dataStartIndex; i < tokens.size(); i++) {
+            if (isSelected(tokens.get(i), obsTypes)) {
+                selected.add(i);
+            }
+        }
+        int[] columns = new int[selected.size()];
+        StringBuilder formattedHeader = new StringBuilder("#").append(StringUtils.rightPad("TIME", TabFormat.DEFAULT_COLUMN_PAD));
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = selected.get(i);
+            formattedHeader.append(StringUtils.rightPad(tokens.get(columns[i]), TabFormat.CUSTOM_COLUMN_PAD));
+        }
+        return new ProjectionPlan(indices.timeIndex, indices.dataStartIndex, columns, formattedHeader.toString());
+    }
+
+    private static boolean isSelected(String column, Collection<String> obsTypes) {
+        for (String type : obsTypes) {
+            if (column.regionMatches(true, 0, type, 0, type.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getFormattedHeader() {
+        return formattedHeader;
+    }
+
+    public int getDataStartIndex() {
+        return dataStartIndex;
+    }
+
+    public boolean isProjected() {
+        return columns != null;
+    }
+
+    // Field indices of the kept columns, null when all columns are kept
+    @Nullable
+    public int[] getColumns() {
+        return columns == null ? null : columns.clone();
+    }
+
+    public void writeProcessedLine(TabLineCursor line, FixedWidthWriter writer) throws IOException {
+        DecimalHourFormatter.appendPadded(line, timeIndex, writer);
+        int fieldCount = line.fieldCount();
+        CharSequence text = line.text();
+        if (columns == null) {
+            for (int i = dataStartIndex; i < fieldCount; i++) {
+                writer.appendPadded(text, line.fieldStart(i), line.fieldEnd(i), TabFormat.CUSTOM_COLUMN_PAD);
+            }
+        } else {
+            for (int column : columns) {
+                if (column < fieldCount) {
+                    writer.appendPadded(text, line.fieldStart(column), line.fieldEnd(column), TabFormat.CUSTOM_COLUMN_PAD);
+                }
+            }
+        }
+        writer.newLine();
+    }
+}
@@ -4,19 +4,32 @@ import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 public class RinexApplication extends Application {
     @Override
     public void start(Stage stage) throws IOException {
         stage.setResizable(false);
         FXMLLoader fxmlLoader = new FXMLLoader(RinexApplication.class.getClassLoader().getResource("rinex-box.fxml"));
-        Scene scene = new Scene(fxmlLoader.load(), 620, 318.0);
+        Scene scene = new Scene(fxmlLoader.load(), 620, 368.0);
         stage.setTitle("Rinex GUI");
         stage.setScene(scene);
         stage.show();
     }
 
     public static void main(String[] args) {
+        if (args.length > 0 && BatchRunner.BATCH_FLAG.equals(args[0])) {
+            System.exit(BatchRunner.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && TabGenerator.GENERATE_FLAG.equals(args[0])) {
+            System.exit(TabGenerator.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && NativeReaderValidator.VALIDATE_FLAG.equals(args[0])) {
+            System.exit(NativeReaderValidator.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && LiveRunner.LIVE_FLAG.equals(args[0])) {
+            System.exit(LiveRunner.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
         launch();
     }
 }
\ No newline at end of file
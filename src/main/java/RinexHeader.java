@@ -0,0 +1,100 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RinexHeader {
+
+    private static final String VERSION_TYPE = "RINEX VERSION / TYPE";
+    private static final String OBS_TYPES = "SYS / # / OBS TYPES";
+    private static final String END_OF_HEADER = "END OF HEADER";
+    private static final String TIME_OF_FIRST_OBS = "TIME OF FIRST OBS";
+    private static final String TIME_OF_LAST_OBS = "TIME OF LAST OBS";
+
+    @Nullable
+    private LocalDateTime firstObservation;
+    @Nullable
+    private LocalDateTime lastObservation;
+    private final List<String> systems = new ArrayList<>();
+
+    public static RinexHeader read(File inputFile) throws IOException {
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(RinexInput.open(inputFile)))) {
+            return read(br);
+        }
+    }
+
+    public static RinexHeader read(BufferedReader reader) throws IOException {
+        RinexHeader header = new RinexHeader();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String label = getLabel(line);
+            if (label.startsWith(END_OF_HEADER)) {
+                return header;
+            }
+            if (label.startsWith(VERSION_TYPE)) {
+                // Mixed files have M there, RINEX 2 GPS files may leave it blank
+                if (line.length() > 40 && line.charAt(40) != ' ' && line.charAt(40) != 'M') {
+                    header.addSystem(line.charAt(40));
+                }
+            } else if (label.startsWith(OBS_TYPES)) {
+                if (line.charAt(0) != ' ') {
+                    header.addSystem(line.charAt(0));
+                }
+            } else if (label.startsWith(TIME_OF_FIRST_OBS)) {
+                header.firstObservation = parseTime(line);
+            } else if (label.startsWith(TIME_OF_LAST_OBS)) {
+                header.lastObservation = parseTime(line);
+            }
+        }
+        throw new RuntimeException("Не найден конец заголовка RINEX");
+    }
+
+    private void addSystem(char system) {
+        String letter = String.valueOf(system);
+        if (!systems.contains(letter)) {
+            systems.add(letter);
+        }
+    }
+
+    static String getLabel(String line) {
+        return line.length() > 60 ? line.substring(60).trim() : "";
+    }
+
+    // 6I6 for year..minute followed by F13.7 seconds
+    private static LocalDateTime parseTime(String line) {
+        try {
+            int year = Integer.parseInt(line.substring(0, 6).trim());
+            int month = Integer.parseInt(line.substring(6, 12).trim());
+            int day = Integer.parseInt(line.substring(12, 18).trim());
+            int hour = Integer.parseInt(line.substring(18, 24).trim());
+            int minute = Integer.parseInt(line.substring(24, 30).trim());
+            double seconds = Double.parseDouble(line.substring(30, 43).trim());
+            int wholeSeconds = (int) seconds;
+            int nanos = (int) Math.round((seconds - wholeSeconds) * 1e9);
+            return LocalDateTime.of(year, month, day, hour, minute, wholeSeconds, Math.min(nanos, 999_999_999));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Время заголовка RINEX неправильного формата: " + line, e);
+        }
+    }
+
+    @Nullable
+    public LocalDateTime getFirstObservation() {
+        return firstObservation;
+    }
+
+    @Nullable
+    public LocalDateTime getLastObservation() {
+        return lastObservation;
+    }
+
+    // Systems named in the header in their order: the system of a single-system file
+    // and the systems with RINEX 3 observation types. Empty for RINEX 2 mixed files.
+    public List<String> getSystems() {
+        return systems;
+    }
+}
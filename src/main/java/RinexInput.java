@@ -0,0 +1,178 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+// Encodings of archived RINEX inputs, taken from the file name: gzip (.gz),
+// Unix compress (.Z) and Hatanaka compact RINEX (.YYd, .crx), also combined
+// like .YYd.Z or .crx.gz. open() decodes them as a stream, nothing is expanded
+// on disk; gfzrnx then reads the input from its standard input (see Feeder).
+public final class RinexInput {
+
+    public enum Encoding {
+        GZIP(".gz"),
+        COMPRESS(".z"),
+        HATANAKA(null);
+
+        @Nullable
+        private final String suffix;
+
+        Encoding(@Nullable String suffix) {
+            this.suffix = suffix;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    // RINEX 2 short name of a compact observation file and RINEX 3 long name
+    private static final Pattern HATANAKA_SHORT_NAME = Pattern.compile("(.*\\.[0-9]{2})d$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern HATANAKA_LONG_NAME = Pattern.compile("(.*)\\.crx$", Pattern.CASE_INSENSITIVE);
+
+    private RinexInput() {
+    }
+
+    // Outermost encoding first, empty for plain RINEX
+    public static List<Encoding> getEncodings(String fileName) {
+        List<Encoding> encodings = new ArrayList<>();
+        String name = fileName;
+        boolean stripped = true;
+        while (stripped) {
+            stripped = false;
+            for (Encoding encoding : new Encoding[]{Encoding.GZIP, Encoding.COMPRESS}) {
+                if (name.toLowerCase().endsWith(encoding.suffix)) {
+                    encodings.add(encoding);
+                    name = name.substring(0, name.length() - encoding.suffix.length());
+                    stripped = true;
+                }
+            }
+        }
+        if (HATANAKA_SHORT_NAME.matcher(name).matches() || HATANAKA_LONG_NAME.matcher(name).matches()) {
+            encodings.add(Encoding.HATANAKA);
+        }
+        return encodings;
+    }
+
+    public static boolean isEncoded(File file) {
+        return !getEncodings(file.getName()).isEmpty();
+    }
+
+    // Name of the plain RINEX file: abcd0010.20d.Z -> abcd0010.20o, X_MO.crx.gz -> X_MO.rnx
+    public static String getDecodedName(String fileName) {
+        String name = fileName;
+        List<Encoding> encodings = getEncodings(fileName);
+        for (Encoding encoding : encodings) {
+            if (encoding.suffix != null) {
+                name = name.substring(0, name.length() - encoding.suffix.length());
+            }
+        }
+        if (encodings.contains(Encoding.HATANAKA)) {
+            Matcher shortName = HATANAKA_SHORT_NAME.matcher(name);
+            if (shortName.matches()) {
+                return shortName.group(1) + (Character.isUpperCase(name.charAt(name.length() - 1)) ? "O" : "o");
+            }
+            Matcher longName = HATANAKA_LONG_NAME.matcher(name);
+            if (longName.matches()) {
+                return longName.group(1) + ".rnx";
+            }
+        }
+        return name;
+    }
+
+    // Plain RINEX text of the file, decoded while it is read
+    public static InputStream open(File file) throws IOException {
+        List<Encoding> encodings = getEncodings(file.getName());
+        InputStream stream = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        try {
+            for (Encoding encoding : encodings) {
+                switch (encoding) {
+                    case GZIP:
+                        stream = new GZIPInputStream(stream, BUFFER_SIZE);
+                        break;
+                    case COMPRESS:
+                        stream = new UnixCompressInputStream(stream);
+                        break;
+                    case HATANAKA:
+                        stream = new HatanakaInputStream(stream);
+                        break;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            stream.close();
+            throw e;
+        }
+        return stream;
+    }
+
+    // Writes the decoded input into the standard input of a process on its own thread.
+    // A process that quits before reading everything only breaks the pipe, its exit
+    // code tells what happened; a file that cannot be decoded fails await().
+    public static final class Feeder {
+
+        private final Thread thread;
+        private volatile long bytes;
+        @Nullable
+        private volatile IOException failure;
+
+        private Feeder(File input, Process process) {
+            thread = new Thread(() -> copy(input, process.getOutputStream()), "rinex-feeder-" + input.getName());
+            thread.setDaemon(true);
+        }
+
+        public static Feeder start(File input, Process process) {
+            Feeder feeder = new Feeder(input, process);
+            feeder.thread.start();
+            return feeder;
+        }
+
+        private void copy(File input, OutputStream output) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (InputStream source = open(input)) {
+                int read;
+                while ((read = source.read(buffer)) != -1) {
+                    if (!write(output, buffer, read)) {
+                        return;
+                    }
+                    bytes += read;
+                }
+            } catch (IOException | RuntimeException e) {
+                failure = new IOException("Не удалось распаковать " + input.getName() + ": " + e.getMessage(), e);
+            } finally {
+                try {
+                    output.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        // false once the process closed its end of the pipe
+        private static boolean write(OutputStream output, byte[] buffer, int length) {
+            try {
+                output.write(buffer, 0, length);
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        public void await() throws IOException, InterruptedException {
+            thread.join();
+            IOException e = failure;
+            if (e != null) {
+                throw e;
+            }
+        }
+
+        // Decoded bytes written so far
+        public long getBytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,461 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// In-process replacement of `gfzrnx -tab` for RINEX 2 and RINEX 3 observation files.
+// Returns the lines gfzrnx writes: a "#OBS" header per system with the observation
+// types of the RINEX header, then per epoch one "OBS" row per satellite with the
+// values as F14.3 and TabFormat.NULL_VALUE for missing ones. Satellites of an epoch
+// are sorted by system and PRN. Event records (flags 2-5) are skipped, observation
+// types redefined in them give a new "#OBS" header. Encoded inputs are decoded on
+// the fly, see RinexInput.
+public class RinexObservationReader implements TabLineSource, Closeable {
+
+    private static final String VERSION_LABEL = "RINEX VERSION / TYPE";
+    private static final String END_OF_HEADER = "END OF HEADER";
+    private static final String RINEX2_TYPES_LABEL = "# / TYPES OF OBSERV";
+    private static final String RINEX3_TYPES_LABEL = "SYS / # / OBS TYPES";
+    private static final int RINEX2_TYPES_PER_LINE = 9;
+    private static final int RINEX3_TYPES_PER_LINE = 13;
+    private static final int RINEX2_SATELLITES_PER_LINE = 12;
+    private static final int RINEX2_OBSERVATIONS_PER_LINE = 5;
+    private static final int RINEX2_LINE_WIDTH = 80;
+    private static final int OBSERVATION_WIDTH = 16;
+    private static final int VALUE_WIDTH = 14;
+    private static final int VALUE_DECIMALS = 3;
+    private static final String HEADER_COLUMNS = "   DATE       TIME             PRN";
+    private static final int HEADER_COLUMN_WIDTH = 16;
+    private static final char CYCLE_SLIP_FLAG = '6';
+
+    // Observations of one satellite in one epoch; reused across epochs
+    private static final class Record {
+        char system;
+        int prn;
+        String satellite;
+        // Observation i starts at offset + OBSERVATION_WIDTH * i
+        final StringBuilder data = new StringBuilder(RINEX2_LINE_WIDTH);
+        int offset;
+        int order;
+    }
+
+    private static final Comparator<Record> EPOCH_ORDER =
+            Comparator.<Record>comparingInt(x -> x.order).thenComparingInt(x -> x.prn);
+
+    private final BufferedReader reader;
+    private final boolean rinex3;
+    // RINEX 2 system of satellites without a system letter
+    private final char fileSystem;
+    // Observation types per system in header order; RINEX 2 files share one list
+    private final Map<Character, List<String>> types = new LinkedHashMap<>();
+    @Nullable
+    private List<String> rinex2Types;
+    private final List<Character> headerWritten = new ArrayList<>();
+    private final ArrayDeque<String> pendingHeaders = new ArrayDeque<>();
+    private final List<Record> records = new ArrayList<>();
+    private final List<Record> spareRecords = new ArrayList<>();
+    private int nextRecord;
+    private String epoch = "";
+    private final StringBuilder line = new StringBuilder(256);
+
+    public RinexObservationReader(File inputFile) throws IOException {
+        this(RinexInput.open(inputFile));
+    }
+
+    public RinexObservationReader(InputStream input) throws IOException {
+        reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.ISO_8859_1), 1 << 16);
+        String versionLine = reader.readLine();
+        if (versionLine == null || !RinexHeader.getLabel(versionLine).startsWith(VERSION_LABEL)) {
+            reader.close();
+            throw new RuntimeException("Нет строки " + VERSION_LABEL + " в начале файла RINEX");
+        }
+        double version;
+        try {
+            version = Double.parseDouble(versionLine.substring(0, 9).trim());
+        } catch (NumberFormatException e) {
+            reader.close();
+            throw new RuntimeException("Неправильная версия RINEX: " + versionLine, e);
+        }
+        if (versionLine.length() <= 40 || versionLine.charAt(20) != 'O') {
+            reader.close();
+            throw new RuntimeException("Встроенный разбор поддерживает только файлы наблюдений RINEX");
+        }
+        rinex3 = version >= 3;
+        char system = versionLine.charAt(40);
+        // Blank or mixed (M): satellites without a letter are GPS
+        fileSystem = system == ' ' || system == 'M' ? 'G' : system;
+        readHeader();
+        if (rinex3) {
+            for (Character typesSystem : types.keySet()) {
+                queueHeader(typesSystem);
+            }
+        }
+    }
+
+    @Nullable
+    @Override
+    public CharSequence readLine() throws IOException {
+        while (pendingHeaders.isEmpty() && nextRecord == records.size()) {
+            if (!readEpoch()) {
+                return null;
+            }
+        }
+        if (!pendingHeaders.isEmpty()) {
+            return pendingHeaders.pollFirst();
+        }
+        Record record = records.get(nextRecord++);
+        List<String> recordTypes = getTypes(record.system);
+        line.setLength(0);
+        line.append("OBS ").append(record.system).append(' ').append(epoch).append(' ').append(record.satellite);
+        for (int i = 0; i < recordTypes.size(); i++) {
+            line.append(' ');
+            appendValue(record.data, record.offset + OBSERVATION_WIDTH * i);
+        }
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // "#OBS" header line of a system as gfzrnx writes it
+    static String getTabHeader(char system, List<String> systemTypes) {
+        StringBuilder header = new StringBuilder("#OBS ").append(system).append(HEADER_COLUMNS);
+        for (String type : systemTypes) {
+            for (int i = type.length(); i < HEADER_COLUMN_WIDTH; i++) {
+                header.append(' ');
+            }
+            header.append(type);
+        }
+        return header.toString();
+    }
+
+    private void readHeader() throws IOException {
+        String headerLine;
+        while ((headerLine = reader.readLine()) != null) {
+            String label = RinexHeader.getLabel(headerLine);
+            if (label.startsWith(END_OF_HEADER)) {
+                return;
+            }
+            readHeaderRecord(headerLine, label);
+        }
+        throw new RuntimeException("Не найден конец заголовка RINEX");
+    }
+
+    // Observation type records with their continuation lines, returns the count of these
+    private int readHeaderRecord(String headerLine, String label) throws IOException {
+        int continuations = 0;
+        try {
+            if (!rinex3 && label.startsWith(RINEX2_TYPES_LABEL)) {
+                int count = Integer.parseInt(headerLine.substring(0, 6).trim());
+                List<String> list = new ArrayList<>(count);
+                String current = headerLine;
+                while (true) {
+                    for (int i = 0; i < RINEX2_TYPES_PER_LINE && list.size() < count; i++) {
+                        list.add(current.substring(10 + 6 * i, 12 + 6 * i).trim());
+                    }
+                    if (list.size() == count) {
+                        break;
+                    }
+                    current = readRequiredLine();
+                    continuations++;
+                }
+                rinex2Types = list;
+                // Systems seen so far get a new header with the new types
+                types.clear();
+                headerWritten.clear();
+            } else if (rinex3 && label.startsWith(RINEX3_TYPES_LABEL)) {
+                char system = headerLine.charAt(0);
+                int count = Integer.parseInt(headerLine.substring(3, 6).trim());
+                List<String> list = new ArrayList<>(count);
+                String current = headerLine;
+                while (true) {
+                    for (int i = 0; i < RINEX3_TYPES_PER_LINE && list.size() < count; i++) {
+                        list.add(current.substring(7 + 4 * i, 10 + 4 * i).trim());
+                    }
+                    if (list.size() == count) {
+                        break;
+                    }
+                    current = readRequiredLine();
+                    continuations++;
+                }
+                types.put(system, list);
+                headerWritten.remove((Character) system);
+            }
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            throw new RuntimeException("Неправильная строка типов наблюдений: " + headerLine, e);
+        }
+        return continuations;
+    }
+
+    // Reads the next epoch with observations into records, false at the end of the file
+    private boolean readEpoch() throws IOException {
+        String epochLine;
+        while ((epochLine = reader.readLine()) != null) {
+            if (epochLine.trim().isEmpty()) {
+                continue;
+            }
+            if (rinex3 && epochLine.charAt(0) != '>') {
+                throw new RuntimeException("Ожидалась строка эпохи RINEX: " + epochLine);
+            }
+            int flagIndex = rinex3 ? 31 : 28;
+            char flag = epochLine.length() > flagIndex ? epochLine.charAt(flagIndex) : '0';
+            int count = parseInt(epochLine, rinex3 ? 32 : 29, rinex3 ? 35 : 32);
+            if (flag >= '2' && flag <= '5') {
+                for (int i = 0; i < count; i++) {
+                    String record = readRequiredLine();
+                    i += readHeaderRecord(record, RinexHeader.getLabel(record));
+                }
+                queueChangedHeaders();
+                continue;
+            }
+            List<String> satellites = rinex3 ? null : readRinex2Satellites(epochLine, count);
+            if (flag == CYCLE_SLIP_FLAG) {
+                skipRecords(satellites, count);
+                continue;
+            }
+            epoch = rinex3 ? getRinex3Epoch(epochLine) : getRinex2Epoch(epochLine);
+            readRecords(satellites, count);
+            queueChangedHeaders();
+            return true;
+        }
+        return false;
+    }
+
+    private List<String> readRinex2Satellites(String epochLine, int count) throws IOException {
+        List<String> satellites = new ArrayList<>(count);
+        String current = epochLine;
+        for (int i = 0; i < count; i++) {
+            if (i > 0 && i % RINEX2_SATELLITES_PER_LINE == 0) {
+                current = readRequiredLine();
+            }
+            int start = 32 + 3 * (i % RINEX2_SATELLITES_PER_LINE);
+            if (current.length() < start + 3) {
+                throw new RuntimeException("Неправильная строка эпохи RINEX: " + current);
+            }
+            satellites.add(current.substring(start, start + 3));
+        }
+        return satellites;
+    }
+
+    private void readRecords(@Nullable List<String> satellites, int count) throws IOException {
+        spareRecords.addAll(records);
+        records.clear();
+        nextRecord = 0;
+        for (int i = 0; i < count; i++) {
+            Record record = spareRecords.isEmpty() ? new Record() : spareRecords.remove(spareRecords.size() - 1);
+            record.data.setLength(0);
+            String id;
+            if (rinex3) {
+                String dataLine = readRequiredLine();
+                if (dataLine.length() < 3) {
+                    throw new RuntimeException("Неправильная строка наблюдений RINEX: " + dataLine);
+                }
+                id = dataLine.substring(0, 3);
+                record.data.append(dataLine);
+                record.offset = 3;
+            } else {
+                id = satellites.get(i);
+                int lines = (getTypes(getSystem(id)).size() + RINEX2_OBSERVATIONS_PER_LINE - 1) / RINEX2_OBSERVATIONS_PER_LINE;
+                for (int j = 0; j < lines; j++) {
+                    String dataLine = readRequiredLine();
+                    record.data.append(dataLine, 0, Math.min(dataLine.length(), RINEX2_LINE_WIDTH));
+                    for (int k = dataLine.length(); k < RINEX2_LINE_WIDTH; k++) {
+                        record.data.append(' ');
+                    }
+                }
+                record.offset = 0;
+            }
+            record.system = getSystem(id);
+            record.prn = parseInt(id, 1, 3);
+            record.satellite = record.system + (record.prn < 10 ? "0" : "") + record.prn;
+            record.order = getOrder(record.system);
+            if (getTypes(record.system).isEmpty() && rinex3) {
+                throw new RuntimeException("Нет типов наблюдений для спутника " + id);
+            }
+            records.add(record);
+        }
+        records.sort(EPOCH_ORDER);
+    }
+
+    private void skipRecords(@Nullable List<String> satellites, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            if (rinex3) {
+                readRequiredLine();
+                continue;
+            }
+            int lines = (getTypes(getSystem(satellites.get(i))).size() + RINEX2_OBSERVATIONS_PER_LINE - 1)
+                    / RINEX2_OBSERVATIONS_PER_LINE;
+            for (int j = 0; j < lines; j++) {
+                readRequiredLine();
+            }
+        }
+    }
+
+    private char getSystem(String satellite) {
+        char system = satellite.charAt(0);
+        return system == ' ' ? fileSystem : system;
+    }
+
+    private List<String> getTypes(char system) {
+        List<String> systemTypes = types.get(system);
+        if (systemTypes != null) {
+            return systemTypes;
+        }
+        if (rinex3 || rinex2Types == null) {
+            return List.of();
+        }
+        types.put(system, rinex2Types);
+        return rinex2Types;
+    }
+
+    // Header order for RINEX 3, otherwise the order of the Constellation enum
+    private int getOrder(char system) {
+        if (rinex3) {
+            int order = 0;
+            for (Character typesSystem : types.keySet()) {
+                if (typesSystem == system) {
+                    return order;
+                }
+                order++;
+            }
+            return order;
+        }
+        Constellation constellation = Constellation.ofCode(system);
+        return constellation != null ? constellation.ordinal() : Constellation.values().length + system;
+    }
+
+    // Headers of systems whose types are new, before their first row
+    private void queueChangedHeaders() {
+        if (rinex3) {
+            for (Character system : types.keySet()) {
+                if (!headerWritten.contains(system)) {
+                    queueHeader(system);
+                }
+            }
+            return;
+        }
+        for (Record record : records) {
+            if (!headerWritten.contains(record.system)) {
+                queueHeader(record.system);
+            }
+        }
+    }
+
+    private void queueHeader(char system) {
+        pendingHeaders.addLast(getTabHeader(system, getTypes(system)));
+        headerWritten.add(system);
+    }
+
+    // F14.3 field as F14.3 again, blank or missing fields as the gfzrnx null value
+    private void appendValue(CharSequence data, int start) {
+        int end = Math.min(start + VALUE_WIDTH, data.length());
+        int i = start;
+        while (i < end && data.charAt(i) == ' ') {
+            i++;
+        }
+        if (i >= end) {
+            line.append(TabFormat.NULL_VALUE);
+            return;
+        }
+        boolean negative = data.charAt(i) == '-';
+        if (negative || data.charAt(i) == '+') {
+            i++;
+        }
+        long value = 0;
+        int decimals = -1;
+        for (; i < end; i++) {
+            char c = data.charAt(i);
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (c >= '0' && c <= '9') {
+                if (decimals < VALUE_DECIMALS) {
+                    value = value * 10 + (c - '0');
+                    if (decimals >= 0) {
+                        decimals++;
+                    }
+                }
+            } else {
+                throw new RuntimeException("Неправильное значение наблюдения: " + data.subSequence(start, end));
+            }
+        }
+        for (int d = Math.max(decimals, 0); d < VALUE_DECIMALS; d++) {
+            value *= 10;
+        }
+        TabFormat.appendFixed(line, negative ? -value : value, VALUE_DECIMALS, VALUE_WIDTH);
+    }
+
+    // "> yyyy mm dd hh mm ss.sssssss" as "yyyy-mm-dd hh:mm:ss.sssssss"
+    private static String getRinex3Epoch(String epochLine) {
+        return formatEpoch(parseInt(epochLine, 2, 6), parseInt(epochLine, 7, 9), parseInt(epochLine, 10, 12),
+                parseInt(epochLine, 13, 15), parseInt(epochLine, 16, 18), epochLine, 18, 29);
+    }
+
+    // " yy mm dd hh mm ss.sssssss", years 80-99 are 1980-1999
+    private static String getRinex2Epoch(String epochLine) {
+        int year = parseInt(epochLine, 1, 3);
+        year += year < 80 ? 2000 : 1900;
+        return formatEpoch(year, parseInt(epochLine, 4, 6), parseInt(epochLine, 7, 9),
+                parseInt(epochLine, 10, 12), parseInt(epochLine, 13, 15), epochLine, 15, 26);
+    }
+
+    private static String formatEpoch(int year, int month, int day, int hour, int minute, String epochLine,
+                                      int secondsStart, int secondsEnd) {
+        String seconds = epochLine.substring(secondsStart, Math.min(secondsEnd, epochLine.length())).trim();
+        int point = seconds.indexOf('.');
+        String whole = point < 0 ? seconds : seconds.substring(0, point);
+        String fraction = point < 0 ? "" : seconds.substring(point + 1);
+        char[] fractionDigits = new char[7];
+        Arrays.fill(fractionDigits, '0');
+        fraction.getChars(0, Math.min(fraction.length(), 7), fractionDigits, 0);
+        StringBuilder text = new StringBuilder(27);
+        text.append(year).append('-');
+        appendTwoDigits(text, month).append('-');
+        appendTwoDigits(text, day).append(' ');
+        appendTwoDigits(text, hour).append(':');
+        appendTwoDigits(text, minute).append(':');
+        try {
+            appendTwoDigits(text, whole.isEmpty() ? 0 : Integer.parseInt(whole));
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Неправильная строка эпохи RINEX: " + epochLine, e);
+        }
+        return text.append('.').append(fractionDigits).toString();
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder text, int value) {
+        if (value < 10) {
+            text.append('0');
+        }
+        return text.append(value);
+    }
+
+    private static int parseInt(String text, int start, int end) {
+        try {
+            String field = text.substring(Math.min(start, text.length()), Math.min(end, text.length())).trim();
+            return field.isEmpty() ? 0 : Integer.parseInt(field);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Неправильная строка RINEX: " + text, e);
+        }
+    }
+
+    private String readRequiredLine() throws IOException {
+        String next = reader.readLine();
+        if (next == null) {
+            throw new RuntimeException("Файл RINEX обрывается внутри записи");
+        }
+        return next;
+    }
+}
@@ -0,0 +1,272 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+public class SatelliteGrouper implements TabLineConsumer {
+
+    public static final String GROUPED_DIR_NAME = "grouped-files";
+    public static final String FILE_SUFFIX = ".txt";
+
+    private static final int SYSTEM_FIELD = 1;
+
+    private final File groupedDir;
+    // Folders made by this grouper, parents first
+    private final List<File> createdDirectories = new ArrayList<>();
+    private final HeaderCollector headers;
+    private final int satNumIndex;
+    @Nullable
+    private final Collection<String> systems;
+    @Nullable
+    private final Collection<String> obsTypes;
+    private final GroupedFileWriter writer;
+    // Per system id: Constellation ordinals first, then systems outside the enum
+    private String[] systemNames;
+    private boolean[] selectedSystems;
+    private SystemLayout[] layouts;
+    private final Map<String, Integer> otherSystemIds = new HashMap<>();
+    // Per satellite slot, see Constellation; satellites outside the enum get slots after SATELLITE_SLOTS
+    private GroupedFileWriter.Target[] targets = new GroupedFileWriter.Target[Constellation.SATELLITE_SLOTS];
+    private int[] otherSlotSystems = new int[0];
+    private final Map<String, Integer> otherSlots = new HashMap<>();
+    // Lines of a system whose header has not been read yet
+    private final Map<String, List<String>> pendingLines = new HashMap<>();
+    private final TabLineCursor pendingCursor = new TabLineCursor();
+    @Nullable
+    private ConversionMetrics metrics;
+    // Per satellite slot in the live mode: output name, epoch to resume after and last epoch written
+    @Nullable
+    private OutputEpochs outputEpochs;
+    private String[] outputs = new String[Constellation.SATELLITE_SLOTS];
+    private OutputEpochs.Epoch[] resumeEpochs = new OutputEpochs.Epoch[Constellation.SATELLITE_SLOTS];
+    private OutputEpochs.Epoch[] lastEpochs = new OutputEpochs.Epoch[Constellation.SATELLITE_SLOTS];
+    @Nullable
+    private OutputEpochs.Epoch currentEpoch;
+    private String fileSuffix = FILE_SUFFIX;
+    private long satellites;
+
+    private static class SystemLayout {
+        final File directory;
+        final ProjectionPlan plan;
+
+        private SystemLayout(File directory, ProjectionPlan plan) {
+            this.directory = directory;
+            this.plan = plan;
+        }
+    }
+
+    public SatelliteGrouper(File outputDir, HeaderCollector headers, FormatType type, @Nullable Collection<String> systems) {
+        this(outputDir, headers, type, systems, null, WriterPool.DEFAULT_CAPACITY, GroupedFileWriter.DEFAULT_IO_THREADS);
+    }
+
+    // obsTypes narrows the written columns, see ProjectionPlan; files are written on ioThreads threads
+    public SatelliteGrouper(File outputDir, HeaderCollector headers, FormatType type, @Nullable Collection<String> systems,
+                            @Nullable Collection<String> obsTypes, int maxOpenFiles, int ioThreads) {
+        if (type == FormatType.UNKNOWN){
+            throw new RuntimeException("Не удалось определить тип входного файла");
+        }
+        this.groupedDir = new File(outputDir, GROUPED_DIR_NAME);
+        this.headers = headers;
+        this.satNumIndex = type.getSatNumIndex();
+        this.systems = systems;
+        this.obsTypes = obsTypes;
+        this.writer = new GroupedFileWriter(ioThreads, maxOpenFiles);
+        Constellation[] constellations = Constellation.values();
+        systemNames = new String[constellations.length];
+        selectedSystems = new boolean[constellations.length];
+        layouts = new SystemLayout[constellations.length];
+        for (Constellation constellation : constellations) {
+            systemNames[constellation.ordinal()] = constellation.getLetter();
+            selectedSystems[constellation.ordinal()] = systems == null || systems.contains(constellation.getLetter());
+        }
+        if (groupedDir.mkdirs()){
+            createdDirectories.add(groupedDir);
+        }
+    }
+
+    // File writing time goes to the WRITING stage, satellites are added on finish
+    public SatelliteGrouper setMetrics(@Nullable ConversionMetrics metrics) {
+        this.metrics = metrics;
+        writer.setMetrics(metrics);
+        return this;
+    }
+
+    // Grouped files are written as *.txt.gz, see GzipBlockCompressor; set before the first line
+    public SatelliteGrouper setCompressor(@Nullable GzipBlockCompressor compressor) {
+        writer.setCompressor(compressor);
+        fileSuffix = compressor == null ? FILE_SUFFIX : FILE_SUFFIX + GzipBlockCompressor.SUFFIX;
+        return this;
+    }
+
+    // Rows are appended to grouped files of an earlier run, which keep their header; set before the first line
+    public SatelliteGrouper setAppend(boolean append) {
+        writer.setAppendExisting(append);
+        return this;
+    }
+
+    // Skips rows up to the epoch last written to their file and puts the new epochs on finish
+    public SatelliteGrouper setOutputEpochs(@Nullable OutputEpochs outputEpochs) {
+        this.outputEpochs = outputEpochs;
+        return this;
+    }
+
+    @Override
+    public void onHeader(TabLineCursor header) throws IOException {
+        String system = TabFormat.getSystem(header);
+        int systemId = getSystemId(header, system);
+        layouts[systemId] = null;
+        List<String> pending = pendingLines.remove(system);
+        if (pending != null) {
+            for (String pendingLine : pending) {
+                onObservation(pendingCursor.reset(pendingLine));
+            }
+        }
+    }
+
+    @Override
+    public void onObservation(TabLineCursor line) throws IOException {
+        int slot = getSlot(line);
+        int systemId = slot < Constellation.SATELLITE_SLOTS
+                ? slot / Constellation.PRN_SLOTS
+                : otherSlotSystems[slot - Constellation.SATELLITE_SLOTS];
+        if (!selectedSystems[systemId]){
+            return;
+        }
+        SystemLayout layout = getLayout(systemId);
+        if (layout == null){
+            pendingLines.computeIfAbsent(systemNames[systemId], x -> new ArrayList<>()).add(line.line().toString());
+            return;
+        }
+        GroupedFileWriter.Target target = targets[slot];
+        if (target == null || target.plan != layout.plan){
+            if (target == null){
+                satellites++;
+            }
+            File file = target != null ? target.file : new File(layout.directory, line.field(satNumIndex) + fileSuffix);
+            if (target == null && outputEpochs != null) {
+                outputs[slot] = GROUPED_DIR_NAME + "/" + layout.directory.getName() + "/" + file.getName();
+                resumeEpochs[slot] = outputEpochs.get(outputs[slot]);
+            }
+            target = new GroupedFileWriter.Target(file, layout.plan.getFormattedHeader(), layout.plan);
+            targets[slot] = target;
+        }
+        if (outputEpochs != null) {
+            if (!outputEpochs.isNew(resumeEpochs[slot], line)) {
+                return;
+            }
+            if (currentEpoch == null || !currentEpoch.matches(line)) {
+                currentEpoch = OutputEpochs.Epoch.of(line);
+            }
+            lastEpochs[slot] = currentEpoch;
+        }
+        writer.write(slot, target, line);
+    }
+
+    private int getSlot(TabLineCursor line){
+        if (line.fieldCount() <= satNumIndex){
+            throw new RuntimeException("Строка неправильного формата: "+ line.line());
+        }
+        Constellation constellation = Constellation.ofField(line, SYSTEM_FIELD);
+        if (constellation != null){
+            int slot = Constellation.slotOfField(line, satNumIndex, constellation);
+            if (slot != -1){
+                return slot;
+            }
+        }
+        String system = line.field(SYSTEM_FIELD);
+        String key = system + " " + line.field(satNumIndex);
+        Integer slot = otherSlots.get(key);
+        if (slot != null){
+            return slot;
+        }
+        int index = otherSlots.size();
+        slot = Constellation.SATELLITE_SLOTS + index;
+        otherSlots.put(key, slot);
+        if (index == otherSlotSystems.length){
+            otherSlotSystems = Arrays.copyOf(otherSlotSystems, Math.max(8, index * 2));
+        }
+        otherSlotSystems[index] = getSystemId(line, system);
+        if (slot >= targets.length){
+            targets = Arrays.copyOf(targets, targets.length * 2);
+            outputs = Arrays.copyOf(outputs, targets.length);
+            resumeEpochs = Arrays.copyOf(resumeEpochs, targets.length);
+            lastEpochs = Arrays.copyOf(lastEpochs, targets.length);
+        }
+        return slot;
+    }
+
+    private int getSystemId(TabLineCursor line, String system){
+        Constellation constellation = Constellation.ofField(line, SYSTEM_FIELD);
+        if (constellation != null){
+            return constellation.ordinal();
+        }
+        Integer id = otherSystemIds.get(system);
+        if (id != null){
+            return id;
+        }
+        id = systemNames.length;
+        otherSystemIds.put(system, id);
+        systemNames = Arrays.copyOf(systemNames, id + 1);
+        selectedSystems = Arrays.copyOf(selectedSystems, id + 1);
+        layouts = Arrays.copyOf(layouts, id + 1);
+        systemNames[id] = system;
+        selectedSystems[id] = systems == null || systems.contains(system);
+        return id;
+    }
+
+    @Nullable
+    private SystemLayout getLayout(int systemId){
+        SystemLayout layout = layouts[systemId];
+        if (layout != null){
+            return layout;
+        }
+        String system = systemNames[systemId];
+        String header = headers.getHeaderMap().get(system);
+        if (header == null){
+            return null;
+        }
+        File directory = new File(groupedDir, system);
+        if (directory.mkdirs()){
+            createdDirectories.add(directory);
+        }
+        layout = new SystemLayout(directory, ProjectionPlan.fromHeader(header, obsTypes));
+        layouts[systemId] = layout;
+        return layout;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (!pendingLines.isEmpty()){
+            throw new RuntimeException("Не найден заголовок для системы: " + pendingLines.keySet());
+        }
+        writer.finish();
+        if (outputEpochs != null){
+            for (int slot = 0; slot < lastEpochs.length; slot++) {
+                if (lastEpochs[slot] != null){
+                    outputEpochs.put(outputs[slot], lastEpochs[slot]);
+                }
+            }
+        }
+        if (metrics != null){
+            metrics.addSatellites(satellites);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    // After close(): deletes the files this grouper created or truncated and the folders it
+    // created, if nothing else is in them. Files of earlier runs it did not write are kept.
+    public void removeOutputs() throws IOException {
+        for (File file : writer.getStartedFiles()) {
+            Files.deleteIfExists(file.toPath());
+        }
+        for (int i = createdDirectories.size() - 1; i >= 0; i--) {
+            createdDirectories.get(i).delete();
+        }
+    }
+}
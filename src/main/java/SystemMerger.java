@@ -0,0 +1,90 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.List;
+
+// Merges the tab outputs of per-system gfzrnx runs by epoch while they are written.
+// Each output is in epoch order; the rows of one epoch are passed on output by output,
+// in the order the outputs are given, and a header as soon as its output reaches it.
+// Only the output holding the next line is read, the others wait on their pipes.
+public class SystemMerger implements TabLineSource {
+
+    private final List<TabLineSource> outputs;
+    private final TabLineCursor[] heads;
+    private final boolean[] active;
+    // Output of the last returned line, it is advanced on the next call
+    private int last = -1;
+    private boolean started;
+
+    public SystemMerger(List<TabLineSource> outputs) {
+        this.outputs = outputs;
+        heads = new TabLineCursor[outputs.size()];
+        active = new boolean[outputs.size()];
+        for (int i = 0; i < heads.length; i++) {
+            heads[i] = new TabLineCursor();
+            active[i] = true;
+        }
+    }
+
+    @Nullable
+    @Override
+    public CharSequence readLine() throws IOException {
+        if (!started) {
+            for (int i = 0; i < heads.length; i++) {
+                advance(i);
+            }
+            started = true;
+        } else if (last != -1) {
+            advance(last);
+        }
+        int next = -1;
+        for (int i = 0; i < heads.length; i++) {
+            if (!active[i]) {
+                continue;
+            }
+            CharSequence line = heads[i].line();
+            if (line.length() > 0 && line.charAt(0) == '#') {
+                last = i;
+                return line;
+            }
+            if (heads[i].fieldCount() < 5) {
+                throw new RuntimeException("Строка неправильного формата: " + line);
+            }
+            if (next == -1 || compareEpochs(heads[i], heads[next]) < 0) {
+                next = i;
+            }
+        }
+        last = next;
+        return next == -1 ? null : heads[next].line();
+    }
+
+    // gfzrnx writes nothing for a system without observations, its output just ends
+    private void advance(int index) throws IOException {
+        if (!active[index]) {
+            return;
+        }
+        CharSequence line = outputs.get(index).readLine();
+        if (line == null) {
+            active[index] = false;
+            return;
+        }
+        heads[index].reset(line);
+    }
+
+    // Date and time fields have a fixed width, so their text sorts like the epochs
+    private static int compareEpochs(TabLineCursor a, TabLineCursor b) {
+        int aStart = a.fieldStart(TabFormat.DATE_INDEX);
+        int aLength = a.fieldEnd(TabFormat.TIME_INDEX) - aStart;
+        int bStart = b.fieldStart(TabFormat.DATE_INDEX);
+        int bLength = b.fieldEnd(TabFormat.TIME_INDEX) - bStart;
+        CharSequence aText = a.text();
+        CharSequence bText = b.text();
+        for (int i = 0; i < Math.min(aLength, bLength); i++) {
+            int difference = aText.charAt(aStart + i) - bText.charAt(bStart + i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return aLength - bLength;
+    }
+}
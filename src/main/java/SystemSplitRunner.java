@@ -0,0 +1,95 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Converts one input with concurrent gfzrnx processes, one per satellite system
+// (-satsys), and feeds their standard outputs to the processor merged by epoch as
+// they are written. Each process keeps only its own system, so multi-GNSS files
+// convert in about the time of their largest system. With fewer process slots than
+// systems neighbouring systems share a process.
+public class SystemSplitRunner {
+
+    private final File inputFile;
+    private final List<String> command;
+    private final List<String> systems;
+    private final ConversionMonitor monitor;
+    private final ConversionMetrics metrics;
+
+    // command must not select systems itself; rows of an epoch follow the order of systems
+    public SystemSplitRunner(File inputFile, List<String> command, List<String> systems, ConversionMonitor monitor,
+                             ConversionMetrics metrics) {
+        if (systems.isEmpty()) {
+            throw new IllegalArgumentException("No systems to convert");
+        }
+        this.inputFile = inputFile;
+        this.command = command;
+        this.systems = systems;
+        this.monitor = monitor;
+        this.metrics = metrics;
+    }
+
+    public int run(TabFileProcessor processor) throws IOException, InterruptedException {
+        monitor.setStage(ConversionMonitor.Stage.CONVERTING, ConversionMonitor.UNKNOWN_SIZE);
+        List<List<String>> commands = new ArrayList<>();
+        for (List<String> group : getGroups(systems, GfzrnxRunner.getMaxProcesses())) {
+            List<String> systemCommand = new ArrayList<>(command);
+            systemCommand.addAll(GfzrnxRunner.getOption(GfzrnxRunner.SAT_SYS_PREFIX, group, null));
+            commands.add(systemCommand);
+        }
+        ConversionMetrics.Span launch = metrics.start(ConversionMetrics.Stage.PROCESS_LAUNCH);
+        List<GfzrnxRunner.Execution> executions = GfzrnxRunner.startAll(commands);
+        List<Process> processes = new ArrayList<>();
+        for (GfzrnxRunner.Execution execution : executions) {
+            processes.add(monitor.register(execution.getProcess()));
+        }
+        launch.stop(0, 0);
+        // The processes run while their outputs are processed, the span covers both
+        ConversionMetrics.Span conversion = metrics.start(ConversionMetrics.Stage.GFZRNX);
+        try {
+            // Every process reads its own decoded copy of an encoded input
+            List<RinexInput.Feeder> feeders = new ArrayList<>();
+            List<TabLineSource> outputs = new ArrayList<>();
+            for (Process process : processes) {
+                if (RinexInput.isEncoded(inputFile)) {
+                    feeders.add(RinexInput.Feeder.start(inputFile, process));
+                }
+                BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()));
+                outputs.add(output::readLine);
+            }
+            processor.process(new SystemMerger(outputs));
+            int exitCode = 0;
+            for (GfzrnxRunner.Execution execution : executions) {
+                int processExitCode = execution.waitFor();
+                if (exitCode == 0) {
+                    exitCode = processExitCode;
+                }
+            }
+            for (RinexInput.Feeder feeder : feeders) {
+                feeder.await();
+            }
+            conversion.stop(inputFile.length(), 0);
+            metrics.addRinexBytes(inputFile.length());
+            return exitCode;
+        } finally {
+            for (Process process : processes) {
+                monitor.unregister(process);
+                if (process.isAlive()) {
+                    process.destroyForcibly();
+                }
+            }
+        }
+    }
+
+    // At most maxGroups runs of neighbouring systems, so the order of systems is kept
+    static List<List<String>> getGroups(List<String> systems, int maxGroups) {
+        int groupCount = Math.min(systems.size(), maxGroups);
+        List<List<String>> groups = new ArrayList<>();
+        for (int i = 0; i < groupCount; i++) {
+            groups.add(systems.subList(i * systems.size() / groupCount, (i + 1) * systems.size() / groupCount));
+        }
+        return groups;
+    }
+}
@@ -0,0 +1,163 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TabFileProcessor implements Closeable {
+
+    // Lines between progress updates and cancellation checks
+    private static final int PROGRESS_LINES = 4096;
+
+    private final List<TabLineConsumer> consumers = new ArrayList<>();
+    // Metrics stage of each consumer, null if its time is not recorded
+    private final List<ConversionMetrics.Stage> stages = new ArrayList<>();
+    @Nullable
+    private ConversionMonitor monitor;
+    @Nullable
+    private ConversionMetrics metrics;
+    private long lineCount;
+
+    public TabFileProcessor addConsumer(TabLineConsumer consumer) {
+        return addConsumer(consumer, null);
+    }
+
+    public TabFileProcessor addConsumer(TabLineConsumer consumer, @Nullable ConversionMetrics.Stage stage) {
+        consumers.add(consumer);
+        stages.add(stage);
+        return this;
+    }
+
+    public TabFileProcessor setMonitor(@Nullable ConversionMonitor monitor) {
+        this.monitor = monitor;
+        return this;
+    }
+
+    public TabFileProcessor setMetrics(@Nullable ConversionMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public void process(File tabFile) throws IOException {
+        try (MappedTabReader reader = new MappedTabReader(tabFile)) {
+            process(reader);
+        }
+    }
+
+    public void process(InputStream tabStream) throws IOException {
+        process(new BufferedReader(new InputStreamReader(tabStream)));
+    }
+
+    public void process(BufferedReader reader) throws IOException {
+        process(reader::readLine);
+    }
+
+    public void process(TabLineSource source) throws IOException {
+        try {
+            TabLineCursor cursor = new TabLineCursor();
+            TabLineConsumer[] consumers = this.consumers.toArray(new TabLineConsumer[0]);
+            // Sampled time of reading and of each consumer, see ConversionMetrics
+            long readNanos = 0;
+            long[] consumerNanos = new long[consumers.length];
+            long headerNanos = 0;
+            long totalBytes = 0;
+            long bytes = 0;
+            int lines = 0;
+            long startLine = lineCount;
+            while (true) {
+                boolean sampled = metrics != null && lineCount % ConversionMetrics.SAMPLE_INTERVAL == 0;
+                long readStart = sampled ? System.nanoTime() : 0;
+                CharSequence line = source.readLine();
+                if (line == null) {
+                    break;
+                }
+                cursor.reset(line);
+                if (sampled) {
+                    readNanos += System.nanoTime() - readStart;
+                }
+                lineCount++;
+                bytes += line.length() + 1;
+                if (++lines == PROGRESS_LINES) {
+                    if (monitor != null) {
+                        monitor.addProgress(bytes, lines);
+                        monitor.checkCancelled();
+                    }
+                    totalBytes += bytes;
+                    bytes = 0;
+                    lines = 0;
+                }
+                if (line.length() > 0 && line.charAt(0) == '#') {
+                    long headerStart = metrics != null ? System.nanoTime() : 0;
+                    for (TabLineConsumer consumer : consumers) {
+                        consumer.onHeader(cursor);
+                    }
+                    if (metrics != null) {
+                        headerNanos += System.nanoTime() - headerStart;
+                    }
+                    continue;
+                }
+                if (!sampled) {
+                    for (TabLineConsumer consumer : consumers) {
+                        consumer.onObservation(cursor);
+                    }
+                    continue;
+                }
+                for (int i = 0; i < consumers.length; i++) {
+                    long consumerStart = System.nanoTime();
+                    consumers[i].onObservation(cursor);
+                    consumerNanos[i] += System.nanoTime() - consumerStart;
+                }
+            }
+            totalBytes += bytes;
+            if (monitor != null) {
+                monitor.addProgress(bytes, lines);
+                monitor.checkCancelled();
+                monitor.setStage(ConversionMonitor.Stage.FINISHING);
+            }
+            if (metrics != null) {
+                metrics.addInput(totalBytes, lineCount - startLine);
+                metrics.add(ConversionMetrics.Stage.READING, readNanos * ConversionMetrics.SAMPLE_INTERVAL);
+                metrics.add(ConversionMetrics.Stage.HEADERS, headerNanos);
+                for (int i = 0; i < consumers.length; i++) {
+                    ConversionMetrics.Stage stage = stages.get(i);
+                    if (stage != null) {
+                        metrics.add(stage, consumerNanos[i] * ConversionMetrics.SAMPLE_INTERVAL);
+                    }
+                }
+            }
+            for (TabLineConsumer consumer : consumers) {
+                consumer.finish();
+            }
+        } finally {
+            close();
+        }
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (TabLineConsumer consumer : consumers) {
+            try {
+                consumer.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
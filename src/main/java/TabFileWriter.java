@@ -0,0 +1,59 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+// Keeps a copy of the tab output when gfzrnx writes it to a pipe instead of a file,
+// with an EpochIndex next to it for reading time ranges later
+public class TabFileWriter implements TabLineConsumer {
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final File tabFile;
+    private final Writer writer;
+    private final EpochIndex index = new EpochIndex(EpochIndex.DEFAULT_SAMPLE_EPOCHS);
+    // Tab lines are ASCII, characters written are bytes
+    private long offset;
+    private String currentDate;
+    private String currentTime;
+
+    public TabFileWriter(File tabFile) throws IOException {
+        this.tabFile = tabFile;
+        writer = new BufferedWriter(new FileWriter(tabFile));
+    }
+
+    @Override
+    public void onHeader(TabLineCursor header) throws IOException {
+        index.addHeader(offset);
+        write(header);
+    }
+
+    @Override
+    public void onObservation(TabLineCursor line) throws IOException {
+        if (line.fieldCount() > TabFormat.TIME_INDEX && (currentDate == null
+                || !line.fieldEquals(TabFormat.DATE_INDEX, currentDate) || !line.fieldEquals(TabFormat.TIME_INDEX, currentTime))) {
+            currentDate = line.field(TabFormat.DATE_INDEX);
+            currentTime = line.field(TabFormat.TIME_INDEX);
+            index.addEpoch(TabFormat.getEpochSecond(line), offset);
+        }
+        write(line);
+    }
+
+    private void write(TabLineCursor line) throws IOException {
+        writer.append(line.text(), line.lineStart(), line.lineEnd());
+        writer.write(LINE_SEPARATOR);
+        offset += line.lineEnd() - line.lineStart() + LINE_SEPARATOR.length();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writer.flush();
+        index.write(tabFile);
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,133 @@
+import org.apache.commons.lang3.StringUtils;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.*;
+
+public final class TabFormat {
+
+    public static final int DEFAULT_COLUMN_PAD = 10;
+    public static final int CUSTOM_COLUMN_PAD = 20;
+    public static final int DATE_INDEX = 2;
+    public static final int TIME_INDEX = 3;
+
+    public static final String NULL_VALUE = "9999999999.999";
+
+    private static final List<String> SELECTED_COLUMNS = List.of("DATE", "TIME");
+
+    private TabFormat() {
+    }
+
+    public static class ColumnIndices {
+        Map<String, Integer> nameToIndexMap;
+        int timeIndex;
+        int dataStartIndex;
+    }
+
+    public static String getSystem(TabLineCursor line){
+        if (line.fieldCount() < 2){
+            throw new RuntimeException("Строка неправильного формата: "+ line.line());
+        }
+        return line.field(1);
+    }
+
+    public static long getEpochSecond(TabLineCursor line){
+        int start = line.fieldStart(DATE_INDEX);
+        CharSequence text = line.text();
+        if (line.fieldLength(DATE_INDEX) != 10 || text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-'){
+            throw new RuntimeException("Дата неправильного формата: " + line.field(DATE_INDEX));
+        }
+        try {
+            int year = Integer.parseInt(text, start, start + 4, 10);
+            int month = Integer.parseInt(text, start + 5, start + 7, 10);
+            int day = Integer.parseInt(text, start + 8, start + 10, 10);
+            long epochDay = LocalDate.of(year, month, day).toEpochDay();
+            return epochDay * 86400 + DecimalHourFormatter.parseSeconds(text, line.fieldStart(TIME_INDEX), line.fieldEnd(TIME_INDEX));
+        } catch (NumberFormatException | DateTimeException e) {
+            throw new RuntimeException("Дата неправильного формата: " + line.field(DATE_INDEX), e);
+        }
+    }
+
+    public static ColumnIndices getHeaderIndices(String header){
+        List<String> strings = getTokens(header);
+        Map<String, Integer> indexMap = new HashMap<>();
+        SELECTED_COLUMNS.forEach(x-> {
+            int i = strings.indexOf(x);
+            if (i != -1){
+                indexMap.put(x, i);
+            } else {
+                throw new RuntimeException("Incorrect Header format");
+            }
+        });
+        ColumnIndices columnIndices = new ColumnIndices();
+        columnIndices.dataStartIndex = getDataIndex(strings);
+        columnIndices.nameToIndexMap = indexMap;
+        columnIndices.timeIndex = indexMap.get("TIME");
+        return columnIndices;
+    }
+
+    public static String getFormattedHeader(String header, ColumnIndices columnIndices){
+        List<String> strings = getTokens(header);
+        StringBuilder result = new StringBuilder("#");
+        Set<String> elements = new HashSet<>(columnIndices.nameToIndexMap.keySet());
+        elements.remove("DATE");
+        elements.forEach(x->result.append(StringUtils.rightPad(x, DEFAULT_COLUMN_PAD)));
+        for (int i = columnIndices.dataStartIndex; i < strings.size(); i++) {
+           result.append(StringUtils.rightPad(strings.get(i), CUSTOM_COLUMN_PAD));
+        }
+        return result.toString();
+    }
+
+    // Integer value with `decimals` implied decimals, right aligned to width like Fortran F
+    public static void appendFixed(StringBuilder line, long value, int decimals, int width) {
+        long abs = Math.abs(value);
+        int digits = 1;
+        for (long rest = abs / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        digits = Math.max(digits, decimals + 1);
+        int length = digits + 1 + (value < 0 ? 1 : 0);
+        for (int i = length; i < width; i++) {
+            line.append(' ');
+        }
+        if (value < 0) {
+            line.append('-');
+        }
+        int start = line.length();
+        line.setLength(start + digits + 1);
+        int position = start + digits;
+        for (int i = 0; i < decimals; i++) {
+            line.setCharAt(position--, (char) ('0' + abs % 10));
+            abs /= 10;
+        }
+        line.setCharAt(position--, '.');
+        while (position >= start) {
+            line.setCharAt(position--, (char) ('0' + abs % 10));
+            abs /= 10;
+        }
+    }
+
+    static List<String> getTokens(String line){
+        TabLineCursor cursor = new TabLineCursor().reset(line);
+        List<String> tokens = new ArrayList<>(cursor.fieldCount());
+        for (int i = 0; i < cursor.fieldCount(); i++) {
+            tokens.add(cursor.field(i));
+        }
+        return tokens;
+    }
+
+    private static int getDataIndex(List<String> headerList){
+        int dataIndex = headerList.indexOf("DATA");
+        if (dataIndex != -1){
+            return dataIndex;
+        }
+        int prnIndex = headerList.indexOf("PRN");
+        if (prnIndex == -1){
+            throw new RuntimeException("Incorrect Header: no PRN");
+        }
+        if (prnIndex + 1 == headerList.size()){
+            throw new RuntimeException("Incorrect Header: PRN is last element");
+        }
+        return prnIndex + 1;
+    }
+}
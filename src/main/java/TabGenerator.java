@@ -0,0 +1,359 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+// Writes synthetic gfzrnx tab output for load tests without receiver data:
+// RinexApplication -generate -output <file.20o.tab|file.20p.tab> [-satsys GRE] [-prn G32,R24]
+//                  [-interval 1] [-hours 24] [-obs_types C1C,L1C] [-null_ratio 0.1] [-seed 1] [-start 2020-01-01T00:00:00]
+// The layout follows the file name like for real inputs: RX3/O puts the PRN at field 4,
+// P has one more field before it. The same settings and seed always give the same file.
+// Generated files can be fed to the batch mode directly, it regroups *.tab inputs without gfzrnx.
+// An EpochIndex is written next to the file, like for kept gfzrnx output.
+public class TabGenerator {
+
+    public static final String GENERATE_FLAG = "-generate";
+
+    private static final DateTimeFormatter EPOCH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSSS");
+    // Header columns are separated so that names line up with the values as in gfzrnx output
+    private static final String COLUMN_GAP = "             ";
+    private static final int VALUE_WIDTH = TabFormat.NULL_VALUE.length();
+    // Values are below 3e10 thousandths, i.e. 30 000 km in metres or cycles
+    private static final long MAX_VALUE = 30_000_000_000L;
+    private static final long SECONDS_IN_VIEW = 3600;
+
+    private static final Map<Constellation, Integer> DEFAULT_PRN_COUNTS = new EnumMap<>(Constellation.class);
+    private static final Map<Constellation, List<String>> DEFAULT_OBS_TYPES = new EnumMap<>(Constellation.class);
+
+    static {
+        DEFAULT_PRN_COUNTS.put(Constellation.GPS, 32);
+        DEFAULT_PRN_COUNTS.put(Constellation.GLONASS, 24);
+        DEFAULT_PRN_COUNTS.put(Constellation.BEIDOU, 46);
+        DEFAULT_PRN_COUNTS.put(Constellation.GALILEO, 36);
+        DEFAULT_PRN_COUNTS.put(Constellation.IRNSS, 7);
+        DEFAULT_PRN_COUNTS.put(Constellation.QZSS, 7);
+        DEFAULT_PRN_COUNTS.put(Constellation.SBAS, 20);
+        DEFAULT_OBS_TYPES.put(Constellation.GPS, List.of("C1C", "L1C", "D1C", "S1C", "C2W", "L2W", "S2W", "C5Q", "L5Q"));
+        DEFAULT_OBS_TYPES.put(Constellation.GLONASS, List.of("C1C", "L1C", "S1C", "C2P", "L2P", "S2P"));
+        DEFAULT_OBS_TYPES.put(Constellation.BEIDOU, List.of("C2I", "L2I", "S2I", "C7I", "L7I", "S7I"));
+        DEFAULT_OBS_TYPES.put(Constellation.GALILEO, List.of("C1X", "L1X", "S1X", "C5X", "L5X", "S5X", "C7X", "L7X"));
+        DEFAULT_OBS_TYPES.put(Constellation.IRNSS, List.of("C5A", "L5A", "S5A"));
+        DEFAULT_OBS_TYPES.put(Constellation.QZSS, List.of("C1C", "L1C", "S1C", "C2L", "L2L"));
+        DEFAULT_OBS_TYPES.put(Constellation.SBAS, List.of("C1C", "L1C", "S1C"));
+    }
+
+    private final FormatType layout;
+    private final Map<Constellation, Integer> prnCounts = new LinkedHashMap<>();
+    @Nullable
+    private List<String> obsTypes;
+    private LocalDateTime start = LocalDateTime.of(2020, 1, 1, 0, 0);
+    private long intervalMillis = 1000;
+    private long durationMillis = 86_400_000;
+    private double nullRatio = 0.1;
+    private long seed = 1;
+    private final char[] digits = new char[VALUE_WIDTH];
+
+    // GPS, GLONASS and Galileo with their usual PRN counts until setSystems is called
+    public TabGenerator(FormatType layout) {
+        if (layout == FormatType.UNKNOWN) {
+            throw new IllegalArgumentException("Unknown tab layout");
+        }
+        this.layout = layout;
+        setSystems(List.of(Constellation.GPS, Constellation.GLONASS, Constellation.GALILEO));
+    }
+
+    public TabGenerator setSystems(List<Constellation> systems) {
+        prnCounts.clear();
+        for (Constellation system : systems) {
+            prnCounts.put(system, DEFAULT_PRN_COUNTS.get(system));
+        }
+        return this;
+    }
+
+    public TabGenerator setPrnCount(Constellation system, int count) {
+        if (count < 1 || count >= Constellation.PRN_SLOTS) {
+            throw new IllegalArgumentException("PRN count must be in 1.." + (Constellation.PRN_SLOTS - 1) + ": " + count);
+        }
+        prnCounts.put(system, count);
+        return this;
+    }
+
+    // The same types for every system, null keeps each system's default types
+    public TabGenerator setObsTypes(@Nullable List<String> obsTypes) {
+        this.obsTypes = obsTypes;
+        return this;
+    }
+
+    public TabGenerator setStart(LocalDateTime start) {
+        this.start = start;
+        return this;
+    }
+
+    public TabGenerator setInterval(long intervalMillis) {
+        if (intervalMillis < 1) {
+            throw new IllegalArgumentException("Interval must be positive: " + intervalMillis);
+        }
+        this.intervalMillis = intervalMillis;
+        return this;
+    }
+
+    public TabGenerator setDuration(long durationMillis) {
+        if (durationMillis < 0) {
+            throw new IllegalArgumentException("Duration must not be negative: " + durationMillis);
+        }
+        this.durationMillis = durationMillis;
+        return this;
+    }
+
+    public TabGenerator setNullRatio(double nullRatio) {
+        if (nullRatio < 0 || nullRatio > 1) {
+            throw new IllegalArgumentException("Null ratio must be in 0..1: " + nullRatio);
+        }
+        this.nullRatio = nullRatio;
+        return this;
+    }
+
+    public TabGenerator setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public String getHeader(Constellation system) {
+        StringBuilder header = new StringBuilder("#OBS ").append(system.getCode()).append("   DATE       TIME");
+        if (layout == FormatType.P) {
+            header.append(COLUMN_GAP).append("FLG");
+        }
+        header.append(COLUMN_GAP).append("PRN");
+        for (String type : getObsTypes(system)) {
+            header.append(COLUMN_GAP).append(type);
+        }
+        return header.toString();
+    }
+
+    private List<String> getObsTypes(Constellation system) {
+        return obsTypes != null ? obsTypes : DEFAULT_OBS_TYPES.get(system);
+    }
+
+    // Returns the number of observation lines written
+    public long generate(Appendable output) throws IOException {
+        return generate(output, null);
+    }
+
+    // Byte offsets of the headers and epochs go to the index when one is given
+    public long generate(Appendable output, @Nullable EpochIndex index) throws IOException {
+        Random random = new Random(seed);
+        long position = 0;
+        for (Constellation system : prnCounts.keySet()) {
+            String header = getHeader(system);
+            if (index != null) {
+                index.addHeader(position);
+            }
+            output.append(header).append('\n');
+            position += header.length() + 1;
+        }
+        StringBuilder line = new StringBuilder(256);
+        long lines = 0;
+        for (long offset = 0; offset < durationMillis; offset += intervalMillis) {
+            LocalDateTime time = start.plusNanos(offset * 1_000_000);
+            String epoch = time.format(EPOCH_FORMAT);
+            if (index != null) {
+                index.addEpoch(time.toEpochSecond(ZoneOffset.UTC), position);
+            }
+            long window = offset / 1000 / SECONDS_IN_VIEW;
+            for (Map.Entry<Constellation, Integer> entry : prnCounts.entrySet()) {
+                Constellation system = entry.getKey();
+                int typeCount = getObsTypes(system).size();
+                for (int prn = 1; prn <= entry.getValue(); prn++) {
+                    // About two thirds of the satellites are in view, changing every hour
+                    if ((window + prn) % 3 == 0) {
+                        continue;
+                    }
+                    line.setLength(0);
+                    line.append("OBS ").append(system.getCode()).append(' ').append(epoch).append(' ');
+                    if (layout == FormatType.P) {
+                        line.append("0 ");
+                    }
+                    line.append(system.getCode()).append((char) ('0' + prn / 10)).append((char) ('0' + prn % 10));
+                    for (int i = 0; i < typeCount; i++) {
+                        line.append(' ');
+                        if (random.nextDouble() < nullRatio) {
+                            line.append(TabFormat.NULL_VALUE);
+                        } else {
+                            appendValue(line, (long) (random.nextDouble() * MAX_VALUE));
+                        }
+                    }
+                    output.append(line).append('\n');
+                    position += line.length() + 1;
+                    lines++;
+                }
+            }
+        }
+        return lines;
+    }
+
+    public long generate(File file) throws IOException {
+        EpochIndex index = new EpochIndex(EpochIndex.DEFAULT_SAMPLE_EPOCHS);
+        long lines;
+        try (Writer writer = new BufferedWriter(new FileWriter(file), 1 << 20)) {
+            lines = generate(writer, index);
+        }
+        index.write(file);
+        return lines;
+    }
+
+    // Thousandths as a right aligned decimal with three fraction digits
+    private void appendValue(StringBuilder line, long thousandths) {
+        int position = digits.length;
+        for (int i = 0; i < 3; i++) {
+            digits[--position] = (char) ('0' + thousandths % 10);
+            thousandths /= 10;
+        }
+        digits[--position] = '.';
+        do {
+            digits[--position] = (char) ('0' + thousandths % 10);
+            thousandths /= 10;
+        } while (thousandths > 0);
+        while (position > 0) {
+            digits[--position] = ' ';
+        }
+        line.append(digits);
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    public static int run(String[] args) {
+        File output = null;
+        TabGenerator generator;
+        try {
+            Map<String, String> options = new LinkedHashMap<>();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("-")) {
+                    throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+                }
+                options.put(arg, BatchRunner.getValue(args, ++i, arg));
+            }
+            String outputName = options.remove("-output");
+            if (outputName == null) {
+                throw new IllegalArgumentException("Не задан параметр -output");
+            }
+            output = new File(outputName);
+            FormatType layout = ConversionJob.getFormat(output);
+            if (layout == FormatType.UNKNOWN || !ConversionJob.isTabFile(output)) {
+                throw new IllegalArgumentException("Имя выходного файла должно быть вида name.20o.tab, name.20p.tab или name.rx3.tab: "
+                        + outputName);
+            }
+            generator = new TabGenerator(layout);
+            configure(generator, options);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage();
+            return 2;
+        }
+        long start = System.nanoTime();
+        try {
+            long lines = generator.generate(output);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf(Locale.US, "%s: %d строк, %.1f МБ, %.1f с%n", output.getPath(), lines, output.length() / 1e6, seconds);
+            return 0;
+        } catch (IOException e) {
+            System.err.println("Не удалось записать " + output.getPath() + ": " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static void configure(TabGenerator generator, Map<String, String> options) {
+        // Systems first, -prn refers to them
+        String systemCodes = options.remove(GfzrnxRunner.SAT_SYS_PREFIX);
+        if (systemCodes != null) {
+            List<Constellation> systems = new ArrayList<>();
+            for (char code : systemCodes.replace(",", "").toUpperCase().toCharArray()) {
+                systems.add(getConstellation(code, GfzrnxRunner.SAT_SYS_PREFIX));
+            }
+            generator.setSystems(systems);
+        }
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            String name = option.getKey();
+            String value = option.getValue();
+            switch (name) {
+                case "-prn":
+                    for (String count : value.split(",")) {
+                        if (count.length() < 2) {
+                            throw new IllegalArgumentException("Параметр -prn задается в виде G32,R24: " + value);
+                        }
+                        Constellation system = getConstellation(Character.toUpperCase(count.charAt(0)), name);
+                        if (!generator.prnCounts.containsKey(system)) {
+                            throw new IllegalArgumentException("Система " + system.getLetter() + " не выбрана в " + GfzrnxRunner.SAT_SYS_PREFIX);
+                        }
+                        generator.setPrnCount(system, BatchRunner.parsePositive(count.substring(1), name));
+                    }
+                    break;
+                case "-interval":
+                    generator.setInterval(Math.round(parseNumber(value, name) * 1000));
+                    break;
+                case "-hours":
+                    generator.setDuration(Math.round(parseNumber(value, name) * 3_600_000));
+                    break;
+                case GfzrnxRunner.TYPES_PREFIX:
+                    generator.setObsTypes(Arrays.asList(value.toUpperCase().split(",")));
+                    break;
+                case "-null_ratio":
+                    generator.setNullRatio(parseNumber(value, name));
+                    break;
+                case "-seed":
+                    generator.setSeed(Long.parseLong(value));
+                    break;
+                case "-start":
+                    try {
+                        generator.setStart(LocalDateTime.parse(value));
+                    } catch (DateTimeParseException e) {
+                        throw new IllegalArgumentException("Параметр -start задается в виде 2020-01-01T00:00:00: " + value);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Неизвестный параметр: " + name);
+            }
+        }
+    }
+
+    private static Constellation getConstellation(char code, String name) {
+        Constellation system = Constellation.ofCode(code);
+        if (system == null) {
+            throw new IllegalArgumentException("Неизвестная система в параметре " + name + ": " + code);
+        }
+        return system;
+    }
+
+    private static double parseNumber(String value, String name) {
+        try {
+            double result = Double.parseDouble(value);
+            if (result > 0 || result == 0 && name.equals("-null_ratio")) {
+                return result;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Параметр " + name + " должен быть положительным числом: " + value);
+    }
+
+    private static void printUsage() {
+        System.err.println("Использование: " + GENERATE_FLAG + " -output <имя.20o.tab|имя.20p.tab> [-satsys GRE] [-prn G32,R24]"
+                + " [-interval 1] [-hours 24] [-obs_types C1C,L1C] [-null_ratio 0.1] [-seed 1] [-start 2020-01-01T00:00:00]");
+    }
+}
@@ -0,0 +1,17 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+public interface TabLineConsumer extends Closeable {
+
+    default void onHeader(TabLineCursor header) throws IOException {
+    }
+
+    void onObservation(TabLineCursor line) throws IOException;
+
+    default void finish() throws IOException {
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+}
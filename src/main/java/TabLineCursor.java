@@ -0,0 +1,161 @@
+import java.util.Arrays;
+
+// Field offsets of one whitespace separated line. Splits the same way as
+// Pattern.compile("\\s+").split(line), but keeps only offsets into the line
+// and is reused for every line of the file.
+public final class TabLineCursor {
+
+    private CharSequence text = "";
+    private int lineStart;
+    private int lineEnd;
+    private int[] starts = new int[32];
+    private int[] ends = new int[32];
+    private int count;
+
+    public TabLineCursor reset(CharSequence line) {
+        return reset(line, 0, line.length());
+    }
+
+    // Field offsets stay relative to `text`, so several lines can share one buffer
+    public TabLineCursor reset(CharSequence text, int start, int end) {
+        this.text = text;
+        this.lineStart = start;
+        this.lineEnd = end;
+        count = 0;
+        if (start == end) {
+            addField(start, start);
+            return this;
+        }
+        int i = start;
+        if (isWhitespace(text.charAt(i))) {
+            while (i < end && isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            if (i == end) {
+                return this;
+            }
+            addField(start, start);
+        }
+        while (i < end) {
+            int fieldStart = i;
+            while (i < end && !isWhitespace(text.charAt(i))) {
+                i++;
+            }
+            addField(fieldStart, i);
+            while (i < end && isWhitespace(text.charAt(i))) {
+                i++;
+            }
+        }
+        return this;
+    }
+
+    private void addField(int start, int end) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B';
+    }
+
+    public CharSequence line() {
+        if (lineStart == 0 && lineEnd == text.length()) {
+            return text;
+        }
+        return text.subSequence(lineStart, lineEnd);
+    }
+
+    public CharSequence text() {
+        return text;
+    }
+
+    public int lineStart() {
+        return lineStart;
+    }
+
+    public int lineEnd() {
+        return lineEnd;
+    }
+
+    public int fieldCount() {
+        return count;
+    }
+
+    public int fieldStart(int index) {
+        checkIndex(index);
+        return starts[index];
+    }
+
+    public int fieldEnd(int index) {
+        checkIndex(index);
+        return ends[index];
+    }
+
+    public int fieldLength(int index) {
+        checkIndex(index);
+        return ends[index] - starts[index];
+    }
+
+    public char charAt(int index, int offset) {
+        return text.charAt(fieldStart(index) + offset);
+    }
+
+    // Compares the field with value character by character, like String.compareTo
+    public int compareField(int index, String value) {
+        int start = fieldStart(index);
+        int length = ends[index] - start;
+        int common = Math.min(length, value.length());
+        for (int i = 0; i < common; i++) {
+            char c = text.charAt(start + i);
+            if (c != value.charAt(i)) {
+                return c - value.charAt(i);
+            }
+        }
+        return length - value.length();
+    }
+
+    public boolean fieldEquals(int index, String value) {
+        int start = fieldStart(index);
+        int length = ends[index] - start;
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isNull(int index) {
+        return fieldEquals(index, TabFormat.NULL_VALUE);
+    }
+
+    public String field(int index) {
+        return text.subSequence(fieldStart(index), ends[index]).toString();
+    }
+
+    public StringBuilder appendField(int index, StringBuilder builder) {
+        return builder.append(text, fieldStart(index), ends[index]);
+    }
+
+    public StringBuilder appendPaddedField(int index, int size, StringBuilder builder) {
+        appendField(index, builder);
+        for (int i = fieldLength(index); i < size; i++) {
+            builder.append(' ');
+        }
+        return builder;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + count);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+public interface TabLineSource {
+
+    @Nullable
+    CharSequence readLine() throws IOException;
+}
@@ -0,0 +1,35 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+// Lines of a tab file from a line start at `offset`, after the header lines given for
+// the part before it. Reads only what was appended to a tab file since an earlier run.
+public class TabTailReader implements TabLineSource, Closeable {
+
+    private final Deque<String> headers;
+    private final MappedTabReader reader;
+
+    public TabTailReader(File tabFile, long offset, List<String> headers) throws IOException {
+        this.headers = new ArrayDeque<>(headers);
+        reader = MappedTabReader.buffered(tabFile, offset);
+    }
+
+    @Nullable
+    @Override
+    public CharSequence readLine() throws IOException {
+        if (!headers.isEmpty()) {
+            return headers.removeFirst();
+        }
+        return reader.readLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
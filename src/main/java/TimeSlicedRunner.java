@@ -0,0 +1,156 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Splits the observation span of one input into epoch windows, converts them
+// with concurrent gfzrnx processes (-epo_beg/-d) and feeds the merged tab
+// output to the processor in epoch order.
+public class TimeSlicedRunner {
+
+    private static final String EPOCH_BEGIN_PREFIX = "-epo_beg";
+    private static final String DURATION_PREFIX = "-d";
+    private static final String OUTPUT_PREFIX = "-fout";
+
+    private final File inputFile;
+    private final List<String> command;
+    private final int windowCount;
+    private final File workDir;
+    private final ConversionMonitor monitor;
+    private final ConversionMetrics metrics;
+
+    public TimeSlicedRunner(File inputFile, List<String> command, int windowCount, File workDir) {
+        this(inputFile, command, windowCount, workDir, new ConversionMonitor(), new ConversionMetrics(inputFile.getPath()));
+    }
+
+    public TimeSlicedRunner(File inputFile, List<String> command, int windowCount, File workDir, ConversionMonitor monitor,
+                            ConversionMetrics metrics) {
+        this.inputFile = inputFile;
+        this.command = command;
+        this.windowCount = windowCount;
+        this.workDir = workDir;
+        this.monitor = monitor;
+        this.metrics = metrics;
+    }
+
+    public int run(TabFileProcessor processor) throws IOException, InterruptedException {
+        RinexHeader header = RinexHeader.read(inputFile);
+        LocalDateTime first = header.getFirstObservation();
+        if (first == null) {
+            throw new RuntimeException("В заголовке RINEX нет TIME OF FIRST OBS");
+        }
+        List<EpochWindow> windows = EpochWindow.split(first, header.getLastObservation(), windowCount);
+        // gfzrnx starts the first chunk at the first epoch of the data, the duration has to reach from there
+        long dataBegin = windows.size() > 1 ? Math.min(first.toEpochSecond(ZoneOffset.UTC), readFirstEpochSecond())
+                : Long.MIN_VALUE;
+        monitor.setStage(ConversionMonitor.Stage.CONVERTING, ConversionMonitor.UNKNOWN_SIZE);
+        Path chunkDir = Files.createTempDirectory(workDir.toPath(), "gfzrnx-chunks");
+        ExecutorService executor = Executors.newFixedThreadPool(windows.size());
+        try {
+            List<File> chunks = new ArrayList<>();
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < windows.size(); i++) {
+                File chunk = chunkDir.resolve("chunk-" + i + ".tab").toFile();
+                List<String> chunkCommand = getChunkCommand(windows.get(i), dataBegin, chunk);
+                chunks.add(chunk);
+                results.add(executor.submit(() -> runChunk(inputFile, chunkCommand, monitor, metrics)));
+            }
+            for (Future<Integer> result : results) {
+                int exitCode = getExitCode(result);
+                if (exitCode != 0) {
+                    processor.close();
+                    return exitCode;
+                }
+            }
+            // The chunk spans are summed, the input is counted once
+            metrics.addRinexBytes(inputFile.length());
+            long chunkBytes = 0;
+            for (File chunk : chunks) {
+                chunkBytes += chunk.length();
+            }
+            monitor.setStage(ConversionMonitor.Stage.PROCESSING, chunkBytes);
+            try (ChunkMerger merger = new ChunkMerger(chunks, windows)) {
+                processor.process(merger);
+            }
+            return 0;
+        } finally {
+            executor.shutdownNow();
+            ConversionJob.deleteDirectory(chunkDir);
+        }
+    }
+
+    private List<String> getChunkCommand(EpochWindow window, long dataBegin, File chunk) {
+        List<String> chunkCommand = new ArrayList<>(command);
+        if (!window.isOpenStarted()) {
+            chunkCommand.add(EPOCH_BEGIN_PREFIX);
+            chunkCommand.add(window.getGfzrnxBegin());
+        }
+        if (!window.isOpenEnded()) {
+            chunkCommand.add(DURATION_PREFIX);
+            chunkCommand.add(String.valueOf(window.isOpenStarted() ? window.getEnd() - dataBegin : window.getDuration()));
+        }
+        chunkCommand.add(OUTPUT_PREFIX);
+        chunkCommand.add(chunk.getAbsolutePath());
+        return chunkCommand;
+    }
+
+    // Whole second of the first observation in the data, TIME OF FIRST OBS may be later
+    private long readFirstEpochSecond() throws IOException {
+        try (RinexObservationReader reader = new RinexObservationReader(inputFile)) {
+            TabLineCursor cursor = new TabLineCursor();
+            for (CharSequence line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.length() > 0 && line.charAt(0) != '#') {
+                    cursor.reset(line);
+                    return TabFormat.getEpochSecond(cursor);
+                }
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    // Runs gfzrnx writing its output to the file named in the command (-fout).
+    // The launch span includes the wait for a free process slot.
+    private static int runChunk(File inputFile, List<String> chunkCommand, ConversionMonitor monitor, ConversionMetrics metrics)
+            throws IOException, InterruptedException {
+        ConversionMetrics.Span launch = metrics.start(ConversionMetrics.Stage.PROCESS_LAUNCH);
+        GfzrnxRunner.Execution execution = GfzrnxRunner.start(chunkCommand, false);
+        Process process = monitor.register(execution.getProcess());
+        launch.stop(0, 0);
+        ConversionMetrics.Span conversion = metrics.start(ConversionMetrics.Stage.GFZRNX);
+        try {
+            // Every chunk process reads its own decoded copy of an encoded input
+            RinexInput.Feeder feeder = RinexInput.isEncoded(inputFile) ? RinexInput.Feeder.start(inputFile, process) : null;
+            int exitCode = execution.waitFor();
+            if (feeder != null) {
+                feeder.await();
+            }
+            conversion.stop(0, 0);
+            return exitCode;
+        } finally {
+            monitor.unregister(process);
+            if (process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static int getExitCode(Future<Integer> result) throws IOException, InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Streaming decoder of Unix compress (.Z) files: LZW with 9 to maxBits bit codes,
+// least significant bit first. compress writes codes in groups of eight, when the
+// code width grows or the table is cleared the rest of the current group is padding.
+public class UnixCompressInputStream extends InputStream {
+
+    private static final int MAGIC_1 = 0x1f;
+    private static final int MAGIC_2 = 0x9d;
+    private static final int BITS_MASK = 0x1f;
+    private static final int BLOCK_MODE_MASK = 0x80;
+    private static final int INIT_BITS = 9;
+    private static final int MAX_BITS = 16;
+    private static final int CLEAR = 256;
+
+    private final InputStream in;
+    private final int maxBits;
+    private final boolean blockMode;
+    private final int[] prefixes;
+    private final byte[] suffixes;
+    // Bytes of the last code, in reverse order
+    private final byte[] stack;
+    private int stackSize;
+    private int codeBits = INIT_BITS;
+    private int nextFree;
+    private int previousCode = -1;
+    private byte firstByte;
+    private long codesRead;
+    private long bitBuffer;
+    private int bitCount;
+    private boolean eof;
+
+    public UnixCompressInputStream(InputStream in) throws IOException {
+        this.in = in instanceof BufferedInputStream ? in : new BufferedInputStream(in);
+        if (this.in.read() != MAGIC_1 || this.in.read() != MAGIC_2) {
+            throw new IOException("Файл не сжат программой compress");
+        }
+        int flags = this.in.read();
+        if (flags < 0) {
+            throw new IOException("Файл compress обрывается в заголовке");
+        }
+        maxBits = flags & BITS_MASK;
+        if (maxBits < INIT_BITS || maxBits > MAX_BITS) {
+            throw new IOException("Неподдерживаемая длина кода compress: " + maxBits);
+        }
+        blockMode = (flags & BLOCK_MODE_MASK) != 0;
+        prefixes = new int[1 << maxBits];
+        suffixes = new byte[1 << maxBits];
+        stack = new byte[1 << maxBits];
+        for (int i = 0; i < 256; i++) {
+            suffixes[i] = (byte) i;
+        }
+        nextFree = blockMode ? CLEAR + 1 : CLEAR;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (stackSize == 0 && !decodeNext()) {
+            return -1;
+        }
+        return stack[--stackSize] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int count = 0;
+        while (count < len) {
+            if (stackSize == 0 && !decodeNext()) {
+                break;
+            }
+            int n = Math.min(len - count, stackSize);
+            for (int i = 0; i < n; i++) {
+                b[off + count + i] = stack[--stackSize];
+            }
+            count += n;
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // Expands the next code onto the stack, false at the end of the input
+    private boolean decodeNext() throws IOException {
+        while (!eof) {
+            int code = readCode();
+            if (code < 0) {
+                eof = true;
+                return false;
+            }
+            if (blockMode && code == CLEAR) {
+                skipGroup();
+                codeBits = INIT_BITS;
+                nextFree = CLEAR + 1;
+                previousCode = -1;
+                continue;
+            }
+            if (previousCode == -1) {
+                if (code >= 256) {
+                    throw new IOException("Поврежденный файл compress");
+                }
+                previousCode = code;
+                firstByte = (byte) code;
+                stack[stackSize++] = firstByte;
+                return true;
+            }
+            int current = code;
+            if (code >= nextFree) {
+                // The code being defined right now: previous string plus its own first byte
+                if (code > nextFree) {
+                    throw new IOException("Поврежденный файл compress");
+                }
+                stack[stackSize++] = firstByte;
+                current = previousCode;
+            }
+            while (current >= 256) {
+                stack[stackSize++] = suffixes[current];
+                current = prefixes[current];
+            }
+            firstByte = suffixes[current];
+            stack[stackSize++] = firstByte;
+            if (nextFree < prefixes.length) {
+                prefixes[nextFree] = previousCode;
+                suffixes[nextFree] = firstByte;
+                nextFree++;
+                if (nextFree >= 1 << codeBits && codeBits < maxBits) {
+                    skipGroup();
+                    codeBits++;
+                }
+            }
+            previousCode = code;
+            return true;
+        }
+        return false;
+    }
+
+    private int readCode() throws IOException {
+        while (bitCount < codeBits) {
+            int b = in.read();
+            if (b < 0) {
+                return -1;
+            }
+            bitBuffer |= (long) b << bitCount;
+            bitCount += 8;
+        }
+        int code = (int) (bitBuffer & ((1 << codeBits) - 1));
+        bitBuffer >>>= codeBits;
+        bitCount -= codeBits;
+        codesRead++;
+        return code;
+    }
+
+    private void skipGroup() throws IOException {
+        while (codesRead % 8 != 0) {
+            if (readCode() < 0) {
+                eof = true;
+                break;
+            }
+        }
+        bitBuffer = 0;
+        bitCount = 0;
+    }
+}
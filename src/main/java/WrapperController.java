@@ -1,3 +1,6 @@
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
@@ -5,37 +8,30 @@ import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.geometry.Pos;
 import javafx.scene.control.Alert;
-import javafx.scene.control.ProgressIndicator;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.SpinnerValueFactory;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.AnchorPane;
+import javafx.scene.layout.GridPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
-import org.apache.commons.lang3.StringUtils;
+import javafx.util.Duration;
 import org.controlsfx.control.CheckComboBox;
 import org.controlsfx.control.IndexedCheckModel;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
-import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public class WrapperController {
 
-    public static final int DEFAULT_COLUMN_PAD = 10;
-    public static final int CUSTOM_COLUMN_PAD = 20;
-    public static final int DATE_INDEX = 2;
-    public static final int TIME_INDEX = 3;
-
-    private static final String NULL_VALUE = "9999999999.999";
-    public static final String COMPONENT_FILE_NAME = "componentCounter.txt";
     private CheckComboBox<String> fileTypesChoiceBox;
 
     private CheckComboBox<String> satSysChoiceBox;
@@ -54,6 +50,20 @@ public class WrapperController {
     @FXML
     private TextField outputName;
 
+    @FXML
+    private CheckBox keepTabFileCheckBox;
+    @FXML
+    private CheckBox useCacheCheckBox;
+    @FXML
+    private CheckBox compressOutputCheckBox;
+    @FXML
+    private CheckBox nativeReaderCheckBox;
+    @FXML
+    private CheckBox splitSystemsCheckBox;
+
+    @FXML
+    private Spinner<Integer> timeWindowsSpinner;
+
     @FXML
     private AnchorPane mainPane;
     @FXML
@@ -63,14 +73,6 @@ public class WrapperController {
 
     private static final List<String> SAT_SYSTEMS;
 
-    private static final HashMap<String, String> MAPPED_SAT_SYSTEMS;
-
-    private static final Pattern INPUT_NAME = Pattern.compile(".*\\.[0-9]{2,4}([op])$", Pattern.CASE_INSENSITIVE);
-
-    private static final Pattern WHITESPACE_SPLIT_PATTERN = Pattern.compile("\\s+");
-
-    private static final List<String> SELECTED_COLUMNS = List.of("DATE", "TIME");
-
     static {
         FILE_TYPES = new ArrayList<>();
         FILE_TYPES.add("Все");
@@ -92,84 +94,17 @@ public class WrapperController {
         FILE_TYPES.add("L7");
         FILE_TYPES.add("L8");
 
-
         SAT_SYSTEMS = new ArrayList<>();
         SAT_SYSTEMS.add("Все");
-        SAT_SYSTEMS.add("GPS");
-        SAT_SYSTEMS.add("GLONASS");
-        SAT_SYSTEMS.add("BeiDou");
-        SAT_SYSTEMS.add("Galileo");
-        SAT_SYSTEMS.add("IRNSS");
-        SAT_SYSTEMS.add("QZSS");
-        SAT_SYSTEMS.add("SBAS");
-
-
-        MAPPED_SAT_SYSTEMS = new HashMap<>();
-        MAPPED_SAT_SYSTEMS.put("GPS", "G");
-        MAPPED_SAT_SYSTEMS.put("GLONASS", "R");
-        MAPPED_SAT_SYSTEMS.put("BeiDou", "C");
-        MAPPED_SAT_SYSTEMS.put("Galileo", "E");
-        MAPPED_SAT_SYSTEMS.put("IRNSS", "I");
-        MAPPED_SAT_SYSTEMS.put("QZSS", "J");
-        MAPPED_SAT_SYSTEMS.put("SBAS", "S");
-    }
-
-    private static final String SELECT_ALL = "Все";
-
-    private static final String TYPES_PREFIX = "-obs_types";
-    private static final String SAT_SYS_PREFIX = "-satsys";
-
-
-    private static class ColumnIndices {
-        Map<String, Integer> nameToIndexMap;
-        int dataStartIndex;
-    }
-
-    private static class RnxDto {
-        public final SystemSatNum systemSatNum;
-        public final String line;
-
-        private RnxDto(String system, String satelliteNumber, String line) {
-            this.systemSatNum = new SystemSatNum(system, satelliteNumber);
-            this.line = line;
-        }
-
-        public String getSystem() {
-            return systemSatNum.system;
-        }
-
-        public String getLine() {
-            return line;
-        }
-
-        public SystemSatNum getSystemSatNum(){
-            return systemSatNum;
+        for (Constellation constellation : Constellation.values()) {
+            SAT_SYSTEMS.add(constellation.getDisplayName());
         }
-
     }
 
-    private static class SystemSatNum{
-        public final String system;
-        public final String satelliteNumber;
-
-        private SystemSatNum(String system, String satelliteNumber) {
-            this.system = system;
-            this.satelliteNumber = satelliteNumber;
-        }
+    private static final String SELECT_ALL = "Все";
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            SystemSatNum that = (SystemSatNum) o;
-            return Objects.equals(system, that.system) && Objects.equals(satelliteNumber, that.satelliteNumber);
-        }
+    private static final int PROGRESS_INTERVAL_MILLIS = 250;
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(system, satelliteNumber);
-        }
-    }
     @FXML
     public void initialize() {
         ObservableList<String> fileTypes = FXCollections.observableList(FILE_TYPES);
@@ -212,6 +147,8 @@ public class WrapperController {
                 }
             }
         });
+        int processors = Runtime.getRuntime().availableProcessors();
+        timeWindowsSpinner.setValueFactory(new SpinnerValueFactory.IntegerSpinnerValueFactory(1, Math.max(processors, 1), 1));
         fileTypeVBox.getChildren().add(fileTypesChoiceBox);
         satSysVBox.getChildren().add(satSysChoiceBox);
     }
@@ -226,8 +163,9 @@ public class WrapperController {
     }
 
     public void runApp() {
-        String command = getCommand();
-        if (command == null) {
+        // The native reader does not need gfzrnx
+        String executable = nativeReaderCheckBox.isSelected() ? null : getExecutable();
+        if (executable == null && !nativeReaderCheckBox.isSelected()) {
             Alert alert = new Alert(Alert.AlertType.ERROR);
             alert.setTitle("Ошибка при запуске");
             alert.setHeaderText(null);
@@ -235,42 +173,58 @@ public class WrapperController {
             alert.showAndWait();
             return;
         }
+        File inputFile = new File(inputTxtField.getText());
+        File outputDir = new File(outputTxtField.getText());
+        File tabFile = keepTabFileCheckBox.isSelected() ? getTabFile(inputFile, outputDir) : null;
+        ConversionJob job = new ConversionJob(inputFile, outputDir, executable, getSelectedSystems(), tabFile)
+                .setObsTypes(getSelectedTypes())
+                .setGfzrnxObsTypes(getGfzrnxTypes())
+                .setCache(useCacheCheckBox.isSelected()
+                        ? new ObservationCache(ObservationCache.getDefaultDirectory(), ObservationCache.DEFAULT_MAX_BYTES) : null)
+                .setTimeWindows(timeWindowsSpinner.getValue())
+                .setCompressOutput(compressOutputCheckBox.isSelected())
+                .setNativeReader(nativeReaderCheckBox.isSelected())
+                .setSplitSystems(splitSystemsCheckBox.isSelected());
         mainPane.setDisable(true);
         loadPane.setDisable(false);
-        loadPane.getChildren().add(new ProgressIndicator());
+        Label stageLabel = new Label();
+        ProgressBar progressBar = new ProgressBar(ProgressBar.INDETERMINATE_PROGRESS);
+        progressBar.setPrefWidth(400);
+        Label detailsLabel = new Label();
+        Button cancelButton = new Button("Отмена");
+        cancelButton.setOnAction(e -> {
+            cancelButton.setDisable(true);
+            job.cancel();
+        });
+        loadPane.getChildren().addAll(stageLabel, progressBar, detailsLabel, cancelButton);
         loadPane.setAlignment(Pos.CENTER);
+        loadPane.setSpacing(10);
+        ConversionMonitor monitor = job.getMonitor();
+        Timeline progressTimeline = new Timeline(new KeyFrame(Duration.millis(PROGRESS_INTERVAL_MILLIS),
+                e -> showProgress(monitor, stageLabel, progressBar, detailsLabel)));
+        progressTimeline.setCycleCount(Animation.INDEFINITE);
+        progressTimeline.play();
         Task<Integer> rinexTask = new Task<>() {
             @Override
-            protected Integer call() {
-                try {
-                    ProcessBuilder builder = new ProcessBuilder();
-                    builder.command(tokenizeCommandStr(command));
-                    builder.redirectErrorStream(true);
-                    Process process = builder.start();
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-                    String line;
-                    while ((line = reader.readLine()) != null)
-                        System.out.println("tasklist: " + line);
-                    return process.waitFor();
-                } catch (IOException | InterruptedException e) {
-                    e.printStackTrace();
-                }
-                return -1;
+            protected Integer call() throws IOException, InterruptedException {
+                // The processor opens the outputs, creating folders and truncating files, so it is made here too
+                return job.run();
             }
         };
         AtomicInteger result = new AtomicInteger(-1);
         rinexTask.setOnSucceeded(t -> {
+            progressTimeline.stop();
             mainPane.setDisable(false);
             loadPane.setDisable(true);
             loadPane.getChildren().clear();
             result.set(rinexTask.getValue());
             if (result.get() == 0) {
-                createRegistryFile();
-                createGroupedFiles();
                 Alert alert = new Alert(Alert.AlertType.INFORMATION);
                 alert.setTitle("Статус программы");
                 alert.setHeaderText(null);
                 alert.setContentText("Программа успешно завершила работу");
+                alert.getDialogPane().setExpandableContent(createStatsPanel(job.getMetrics()));
+                alert.getDialogPane().setExpanded(true);
                 alert.showAndWait();
             } else {
                 Alert alert = new Alert(Alert.AlertType.WARNING);
@@ -280,33 +234,70 @@ public class WrapperController {
                 alert.showAndWait();
             }
         });
+        rinexTask.setOnFailed(t -> {
+            progressTimeline.stop();
+            mainPane.setDisable(false);
+            loadPane.setDisable(true);
+            loadPane.getChildren().clear();
+            Throwable exception = rinexTask.getException();
+            if (exception instanceof CancellationException) {
+                Alert alert = new Alert(Alert.AlertType.INFORMATION);
+                alert.setTitle("Статус программы");
+                alert.setHeaderText(null);
+                alert.setContentText("Обработка отменена, созданные файлы удалены");
+                alert.showAndWait();
+                return;
+            }
+            exception.printStackTrace();
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle("Статус программы");
+            alert.setHeaderText(null);
+            alert.setContentText("Ошибка при обработке вывода GFZRNX: " + exception.getMessage());
+            alert.showAndWait();
+        });
         Thread thread = new Thread(rinexTask);
+        thread.setDaemon(true);
         thread.start();
     }
 
-
-    private String getCommand() {
-        URL resource = WrapperController.class.getClassLoader().getResource("gfzrnx_2.0.1_win32.exe");
-        String pathToExecutable = null;
-        if (resource != null) {
-            pathToExecutable = resource.getPath();
-        } else {
-            File exeDirectory = new File("./gfzrnx");
-            if (exeDirectory.exists() && exeDirectory.isDirectory()) {
-                Path path = null;
-                try {
-                    path = Files.list(exeDirectory.toPath()).filter(x -> {
-                        File file = x.toFile();
-                        return file.isFile() && file.getName().endsWith(".exe");
-                    }).findFirst().orElse(null);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-                if (path != null) {
-                    pathToExecutable = path.toAbsolutePath().toString();
-                }
+    // Time and throughput per stage; stages on several threads show their summed time
+    private static GridPane createStatsPanel(ConversionMetrics metrics) {
+        GridPane grid = new GridPane();
+        grid.setHgap(16);
+        grid.setVgap(4);
+        grid.addRow(0, new Label("Стадия"), new Label("Время, с"), new Label("МБ/с"));
+        int row = 1;
+        for (ConversionMetrics.Stage stage : ConversionMetrics.Stage.values()) {
+            long nanos = metrics.getNanos(stage);
+            if (nanos == 0) {
+                continue;
             }
+            String throughput = metrics.getBytes(stage) > 0
+                    ? String.format(Locale.US, "%.1f", metrics.getMegabytesPerSecond(stage)) : "";
+            grid.addRow(row++, new Label(stage.getDisplayName()), new Label(String.format(Locale.US, "%.2f", nanos / 1e9)),
+                    new Label(throughput));
+        }
+        grid.add(new Label(String.format(Locale.US, "Всего %.2f с: %d строк, %d спутников, %d эпох",
+                metrics.getWallNanos() / 1e9, metrics.getLines(ConversionMetrics.Stage.READING), metrics.getSatellites(),
+                metrics.getEpochs())), 0, row, 3, 1);
+        return grid;
+    }
+
+    private static void showProgress(ConversionMonitor monitor, Label stageLabel, ProgressBar progressBar, Label detailsLabel) {
+        stageLabel.setText(monitor.getStage().getDisplayName());
+        double fraction = monitor.getFraction();
+        progressBar.setProgress(fraction < 0 ? ProgressBar.INDETERMINATE_PROGRESS : fraction);
+        String read = String.format(Locale.US, "%.1f", monitor.getBytesRead() / 1e6);
+        if (fraction >= 0) {
+            read += String.format(Locale.US, " из %.1f", monitor.getTotalBytes() / 1e6);
         }
+        detailsLabel.setText(String.format(Locale.US, "Прочитано %s МБ, %d строк, %.0f строк/с", read,
+                monitor.getLines(), monitor.getLinesPerSecond()));
+    }
+
+
+    private String getExecutable() {
+        String pathToExecutable = GfzrnxRunner.findExecutable();
         if (pathToExecutable == null) {
             Alert alert = new Alert(Alert.AlertType.ERROR);
             alert.setTitle("Ошибка при запуске");
@@ -315,19 +306,7 @@ public class WrapperController {
             alert.showAndWait();
             return null;
         }
-        StringBuilder cmdPromptBuilder = new StringBuilder(pathToExecutable);
-        cmdPromptBuilder.append(" -finp ");
-        cmdPromptBuilder.append("\"" + inputTxtField.getText() + "\"");
-        cmdPromptBuilder.append(" -tab ");
-        cmdPromptBuilder.append(" -fout ");
-        cmdPromptBuilder.append("\""+outputTxtField.getText());
-        cmdPromptBuilder.append(File.separator);
-        cmdPromptBuilder.append(outputName.getText()+ "\"");
-        cmdPromptBuilder.append(" ");
-        cmdPromptBuilder.append(" -f ");
-        cmdPromptBuilder.append(getChoiceBoxString(fileTypesChoiceBox, TYPES_PREFIX, ','));
-        cmdPromptBuilder.append(getChoiceBoxString(satSysChoiceBox, SAT_SYS_PREFIX, MAPPED_SAT_SYSTEMS, null));
-        return cmdPromptBuilder.toString();
+        return pathToExecutable;
     }
 
     public void pickFile(TextField textField){
@@ -386,15 +365,26 @@ public class WrapperController {
             alert.showAndWait();
             return false;
         }
-        if (outputName.getText() == null || outputName.getText().isEmpty()){
+        return true;
+    }
+
+    // Named like in batch runs, <input name>.tab, when no name is given. Only such names are
+    // recognized later as inputs for regrouping, time ranges and the live mode.
+    private File getTabFile(File inputFile, File outputDir) {
+        String name = outputName.getText();
+        if (name == null || name.isEmpty()) {
+            return new File(outputDir, inputFile.getName() + ConversionJob.TAB_SUFFIX);
+        }
+        File tabFile = new File(outputDir, name);
+        if (!ConversionJob.isTabFile(tabFile) || ConversionJob.getFormat(tabFile) != ConversionJob.getFormat(inputFile)) {
             Alert alert = new Alert(Alert.AlertType.WARNING);
-            alert.setTitle("Ошибка при запуске");
+            alert.setTitle("Сохранение вывода GFZRNX");
             alert.setHeaderText(null);
-            alert.setContentText("Название файла вывода не определено");
+            alert.setContentText("Файл " + name + " не будет распознан как вывод GFZRNX при повторной обработке,"
+                    + " имя должно иметь вид " + inputFile.getName() + ConversionJob.TAB_SUFFIX);
             alert.showAndWait();
-            return false;
         }
-        return true;
+        return tabFile;
     }
 
     private boolean checkChoiceBoxes() {
@@ -425,357 +415,44 @@ public class WrapperController {
         return checkChoiceBoxes();
     }
 
-    private String getChoiceBoxString(CheckComboBox<String> checkComboBox, String
-            prefix, @Nullable Character separator) {
-        return getChoiceBoxString(checkComboBox, prefix, null, separator);
-    }
-
-    private String getChoiceBoxString(CheckComboBox<String> checkComboBox, String
-            prefix, @Nullable Map<String, String> nameMap, @Nullable Character separator) {
-        ObservableList<String> checkedItems = checkComboBox.getCheckModel().getCheckedItems();
-        StringBuilder result = new StringBuilder();
-        result.append(prefix);
-        result.append(" ");
-        List<String> finalList;
-        if (checkedItems.contains(SELECT_ALL)) {
-            ObservableList<String> items = checkComboBox.getItems();
-            if (nameMap == null) {
-                finalList = new ArrayList<>(items);
-                finalList.remove(SELECT_ALL);
-            } else {
-                List<String> keyList = new ArrayList<>(items);
-                keyList.remove(SELECT_ALL);
-                finalList = new ArrayList<>();
-                for (String x : keyList) {
-                    finalList.add(nameMap.get(x));
-                }
-            }
-        } else {
-            if (nameMap == null) {
-                finalList = new ArrayList<>(checkedItems);
-            } else {
-                List<String> keyList = new ArrayList<>(checkedItems);
-                finalList = new ArrayList<>();
-                for (String x : keyList) {
-                    finalList.add(nameMap.get(x));
-                }
-            }
-        }
-
-        for (int i = 0; i < finalList.size(); i++) {
-            result.append(finalList.get(i));
-            if (separator != null) {
-                if (i != finalList.size() - 1) {
-                    result.append(separator);
-                }
-            }
-        }
-        result.append(" ");
-        return result.toString();
-    }
-
-    private void createGroupedFiles(){
-        String outputFilePath = outputTxtField.getText() + File.separator + outputName.getText();
-        File outputFile = new File(outputFilePath);
-        List<RnxDto> result = parseOutputFile(outputFile, inputTxtField.getText());
-        Map<String, String> systemToHeaderMap = getHeaderMap(outputFile);
-        groupDto(result, systemToHeaderMap);
-    }
-
-    private void createRegistryFile(){
-        String outputFilePath = outputTxtField.getText() + File.separator + outputName.getText();
-        File outputFile = new File(outputFilePath);
-        try (BufferedReader br = new BufferedReader(new FileReader(outputFile))) {
-            String line;
-            String currentTime = null;
-            List<String> infoBlock = new ArrayList<>();
-            String fullFilePath = outputTxtField.getText() + File.separator + COMPONENT_FILE_NAME;
-            File currentFile = Paths.get(fullFilePath).toFile();
-            try(FileWriter outputWriter = new FileWriter(currentFile)) {
-                while ((line = br.readLine()) != null) {
-                    if (line.startsWith("#")){
-                        continue;
-                    }
-                    List<String> tokens = Arrays.asList(WHITESPACE_SPLIT_PATTERN.split(line));
-                    if (tokens.size() < 5){
-                        throw new RuntimeException("Строка неправильного формата: "+ line);
-                    }
-                    String date = tokens.get(DATE_INDEX);
-                    String time = tokens.get(TIME_INDEX);
-                    String dateTime = date + " " + time;
-                    if (currentTime == null){
-                        currentTime= dateTime;
-                    } else {
-                        if (currentTime.equals(dateTime)){
-                            infoBlock.add(line);
-                        } else {
-                            processInfoBlock(infoBlock, outputWriter);
-                            infoBlock.clear();
-                            infoBlock.add(line);
-                            currentTime = dateTime;
-                        }
-                    }
-                }
-            }
-
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
-    private void processInfoBlock(List<String> infoBlock, FileWriter writer) throws IOException {
-        Map<String, List<String>> groupedData = infoBlock.stream().collect(Collectors.groupingBy(this::getSystem));
-        Set<Map.Entry<String, List<String>>> entries = groupedData.entrySet();
-        for (Map.Entry<String, List<String>> entry : entries) {
-            List<String> systemBlock = entry.getValue();
-            String firstLine = systemBlock.get(0);
-            List<String> firstTokens = Arrays.asList(WHITESPACE_SPLIT_PATTERN.split(firstLine));
-            String date = firstTokens.get(DATE_INDEX);
-            String time = firstTokens.get(TIME_INDEX);
-            String dateTime = date + " " + time;
-            String systemType = firstTokens.get(1);
-            int numberOfColumns = firstTokens.size() - 5;
-            int[] countArray = new int[numberOfColumns+1];
-            countArray[0]=systemBlock.size();
-            for (String line : systemBlock) {
-                List<String> tokens = Arrays.asList(WHITESPACE_SPLIT_PATTERN.split(line));
-                for (int i = 5; i < tokens.size(); i++) {
-                    String currentToken = tokens.get(i);
-                    if (!NULL_VALUE.equals(currentToken)) {
-                        countArray[i-4]++;
-                    }
-                }
-            }
-            String finalString = getFinalString(dateTime, systemType, countArray);
-            writer.write(finalString);
-            writer.write(System.lineSeparator());
-        }
-    }
-
-    private String getFinalString(String dateTime, String system, int[] countArray){
-        StringBuilder s = new StringBuilder(system + " " + dateTime + " ");
-        for (int i = 0; i < countArray.length; i++) {
-           s.append(countArray[i]).append(" ");
-        }
-        return s.toString();
-    }
-    private String getSystem(String line){
-        List<String> tokens = Arrays.asList(WHITESPACE_SPLIT_PATTERN.split(line));
-        if (tokens.size() < 2){
-            throw new RuntimeException("Строка неправильного формата: "+ line);
-        }
-        return tokens.get(1);
-    }
-    private Map<String, String> getHeaderMap(File outputFile){
-        try (BufferedReader br = new BufferedReader(new FileReader(outputFile))) {
-            String line;
-            Map<String, String> resultMap = new HashMap<>();
-            while ((line = br.readLine()) != null) {
-                if (!line.startsWith("#")){
-                    continue;
-                }
-                List<String> tokens = Arrays.asList(WHITESPACE_SPLIT_PATTERN.split(line));
-                if (tokens.size() < 2){
-                    throw new RuntimeException("Заголовок неправильного формата: "+ line);
-                }
-                String system = tokens.get(1);
-                resultMap.put(system, line);
-            }
-            return resultMap;
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return null;
-    }
-    //TODO: убьет работу с .P файлами, надо будет пофиксить
-    private static String getHeader(File outputFile){
-        try (BufferedReader br = new BufferedReader(new FileReader(outputFile))) {
-            String line = br.readLine();
-            if (line.startsWith("#")){
-                return line;
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-        return null;
-    }
-    public void groupDto(List<RnxDto> dtoList, Map<String, String> headerMap){
+    @Nullable
+    private List<String> getSelectedSystems(){
         List<String> checked = satSysChoiceBox.getCheckModel().getCheckedItems();
-        List<String> checkedMapped = new ArrayList<>();
-        checked.forEach(x-> checkedMapped.add(MAPPED_SAT_SYSTEMS.get(x)));
-        List<RnxDto> finalList = dtoList;
-        if (!checked.contains(SELECT_ALL)){
-            finalList = finalList.stream().filter(x -> equalsAny(x.getSystem(), checkedMapped)).collect(Collectors.toList());
-        }
-        Map<SystemSatNum, List<RnxDto>> listMap = finalList.stream().collect(Collectors.groupingBy(RnxDto::getSystemSatNum));
-        String string = outputTxtField.getText() + File.separator + "grouped-files";
-        File childFile = new File(string);
-        childFile.mkdirs();
-        Set<Map.Entry<SystemSatNum, List<RnxDto>>> entries = listMap.entrySet();
-        for (Map.Entry<SystemSatNum, List<RnxDto>> entry : entries) {
-            File subfolder = Paths.get(string, entry.getKey().system).toFile();
-            subfolder.mkdirs();
-        }
-
-        for (Map.Entry<SystemSatNum, List<RnxDto>> entry : entries) {
-            SystemSatNum key = entry.getKey();
-            String header = headerMap.get(key.system);
-            ColumnIndices headerIndices = getHeaderIndices(header);
-            String formattedHeader = getFormattedHeader(header, headerIndices);
-            File currentFile = Paths.get(string, key.system, key.satelliteNumber + ".txt").toFile();
-            List<RnxDto> value = entry.getValue();
-            try(FileWriter output = new FileWriter(currentFile)) {
-                output.write(formattedHeader);
-                output.write("\n");
-                value.forEach(x-> {
-                    try {
-                        output.write(getProcessedLine(x.getLine(), headerIndices));
-                        output.write(System.lineSeparator());
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                });
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-    }
-
-    private static String getProcessedLine(String line, @Nullable ColumnIndices headerIndices){
-        if (headerIndices == null){
-            return line;
-        }
-        String[] strArr = WHITESPACE_SPLIT_PATTERN.split(line);
-        List<String> strings = Arrays.asList(strArr);
-//        String date = strings.get(headerIndices.nameToIndexMap.get("DATE"));
-        String time = strings.get(headerIndices.nameToIndexMap.get("TIME"));
-        LocalTime localTime = LocalTime.parse(time);
-        double decimalPart = localTime.getMinute()/60. + localTime.getSecond()/3600.;
-        double result = localTime.getHour() + decimalPart;
-        StringBuilder builder = new StringBuilder();
-        String timeResult = String.format(Locale.US, "%08.6f", result);
-        String paddedTime = StringUtils.rightPad(timeResult, DEFAULT_COLUMN_PAD);
-        builder.append(paddedTime);
-        for (int i = headerIndices.dataStartIndex; i < strings.size(); i++) {
-            builder.append(StringUtils.rightPad(strings.get(i), CUSTOM_COLUMN_PAD));
-        }
-        return builder.toString();
-    }
-
-    private static ColumnIndices getHeaderIndices(String header){
-        String[] strArr = WHITESPACE_SPLIT_PATTERN.split(header);
-        List<String> strings = Arrays.asList(strArr);
-        Map<String, Integer> indexMap = new HashMap<>();
-        SELECTED_COLUMNS.forEach(x-> {
-            int i = strings.indexOf(x);
-            if (i != -1){
-                indexMap.put(x, i);
-            } else {
-                throw new RuntimeException("Incorrect Header format");
-            }
-        });
-        ColumnIndices columnIndices = new ColumnIndices();
-        columnIndices.dataStartIndex = getDataIndex(strings);
-        columnIndices.nameToIndexMap = indexMap;
-        return columnIndices;
-    }
-
-    private static String getFormattedHeader(String header, ColumnIndices columnIndices){
-        String[] strArr = WHITESPACE_SPLIT_PATTERN.split(header);
-        List<String> strings = Arrays.asList(strArr);
-        StringBuilder result = new StringBuilder("#");
-        Set<String> elements = new HashSet<>(columnIndices.nameToIndexMap.keySet());
-        elements.remove("DATE");
-        elements.forEach(x->result.append(StringUtils.rightPad(x, DEFAULT_COLUMN_PAD)));
-        for (int i = columnIndices.dataStartIndex; i < strings.size(); i++) {
-           result.append(StringUtils.rightPad(strings.get(i), CUSTOM_COLUMN_PAD));
-        }
-        return result.toString();
-    }
-
-    private static int getDataIndex(List<String> headerList){
-        int dataIndex = headerList.indexOf("DATA");
-        if (dataIndex != -1){
-            return dataIndex;
-        }
-        int prnIndex = headerList.indexOf("PRN");
-        if (prnIndex == -1){
-            throw new RuntimeException("Incorrect Header: no PRN");
-        }
-        if (prnIndex + 1 == headerList.size()){
-            throw new RuntimeException("Incorrect Header: PRN is last element");
+        if (checked.contains(SELECT_ALL)){
+            return null;
         }
-        return prnIndex + 1;
+        List<String> checkedMapped = new ArrayList<>();
+        checked.forEach(x-> checkedMapped.add(getSystemLetter(x)));
+        return checkedMapped;
     }
 
-    public static boolean equalsAny(String source, List<String> list){
-        return list.stream().anyMatch(x->x.equals(source));
-    }
-    public static List<RnxDto> parseOutputFile(File outputFile, String inputFileName){
-        List<RnxDto> result = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(outputFile))) {
-            String line;
-            FormatType type;
-            type = getFormat(inputFileName);
-            if (type == FormatType.UNKNOWN){
-                throw new RuntimeException("Не удалось определить тип входного файла");
-            }
-            while ((line = br.readLine()) != null) {
-                if (line.startsWith("#")){
-                    continue;
-                }
-                result.add(parseOutputLine(line, type));
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    private static String getSystemLetter(String displayName){
+        Constellation constellation = Constellation.ofDisplayName(displayName);
+        if (constellation == null){
+            throw new RuntimeException("Неизвестная система навигации: " + displayName);
         }
-        return result;
+        return constellation.getLetter();
     }
 
-    private static FormatType getFormat(String fileName){
-        String lowerCase = fileName.toLowerCase();
-        if (lowerCase.endsWith(".rx3")){
-            return FormatType.RX3;
-        }
-        if (INPUT_NAME.matcher(lowerCase).find()){
-            if (lowerCase.endsWith("o")){
-                return FormatType.O;
-            } else {
-                return FormatType.P;
-            }
+    // Null for "Все", every column of the gfzrnx output is kept then
+    @Nullable
+    private List<String> getSelectedTypes(){
+        List<String> checked = fileTypesChoiceBox.getCheckModel().getCheckedItems();
+        if (checked.contains(SELECT_ALL)){
+            return null;
         }
-        return FormatType.UNKNOWN;
-    }
-    private enum FormatType{
-        RX3,
-        P,
-        O,
-        UNKNOWN
-    }
-    public static RnxDto parseOutputLine(String line, FormatType type){
-        String[] strArr = WHITESPACE_SPLIT_PATTERN.split(line);
-        int sysIndex = 1;
-        int satNumIndex = getSatNumIndex(type);
-        String system = strArr[sysIndex];
-        String satelliteNum = strArr[satNumIndex];
-        return new RnxDto(system, satelliteNum, line);
+        return new ArrayList<>(checked);
     }
 
-    public static int getSatNumIndex(FormatType type){
-        if (type == FormatType.RX3 || type == FormatType.O){
-            return  4;
+    // gfzrnx is still given the full list for "Все", as before
+    private List<String> getGfzrnxTypes(){
+        List<String> selected = getSelectedTypes();
+        if (selected != null){
+            return selected;
         }
-        if (type == FormatType.P){
-            return  5;
-        }
-        throw new RuntimeException("Неизвестный тип записи");
+        List<String> types = new ArrayList<>(FILE_TYPES);
+        types.remove(SELECT_ALL);
+        return types;
     }
 
-    private static String[] tokenizeCommandStr(String command){
-        StringTokenizer st = new StringTokenizer(command);
-        String[] cmdarray = new String[st.countTokens()];
-        for (int i = 0; st.hasMoreTokens(); i++)
-            cmdarray[i] = st.nextToken();
-        return cmdarray;
-    }
-}
\ No newline at end of file
+}
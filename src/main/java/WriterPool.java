@@ -0,0 +1,220 @@
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Keeps at most `capacity` files open; the least recently used writer is closed
+// and reopened in append mode when its slot shows up again. Files are addressed
+// by a dense int slot, the recency order is a linked list over slot arrays.
+// Open writers share a pool of direct buffers, one buffer per open file.
+// A writer that fails to close on eviction is kept with its own file in
+// drainEvictionFailures(), the file being opened is not affected.
+// In the compressed mode an evicted writer leaves its buffered rows here instead of
+// writing them as a short gzip member; they go into the next block of the file.
+public class WriterPool implements Closeable {
+
+    // One file per satellite slot; buffers and handles are only taken by the satellites
+    // actually written, so the open files follow the active satellites
+    public static final int DEFAULT_CAPACITY = Constellation.SATELLITE_SLOTS;
+
+    private static final int NONE = -1;
+
+    private final int capacity;
+    private final ByteBufferPool buffers;
+    @Nullable
+    private GzipBlockCompressor compressor;
+    private boolean appendExisting;
+    private FixedWidthWriter[] writers;
+    // File of each open writer, and of each evicted one with detached rows
+    private File[] files;
+    // Rows of evicted compressed writers not written yet
+    private byte[][] detached;
+    private boolean[] created;
+    private int[] previous;
+    private int[] next;
+    // Most and least recently used open slots
+    private int head = NONE;
+    private int tail = NONE;
+    private int openCount;
+    private final Map<File, IOException> evictionFailures = new LinkedHashMap<>();
+    // Files created or truncated by this pool, in the order they were started
+    private final List<File> startedFiles = new ArrayList<>();
+
+    public WriterPool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public WriterPool(int capacity) {
+        this(capacity, Constellation.SATELLITE_SLOTS);
+    }
+
+    public WriterPool(int capacity, int slots) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Pool capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.buffers = new ByteBufferPool(ByteBufferPool.DEFAULT_BUFFER_SIZE, capacity);
+        this.writers = new FixedWidthWriter[slots];
+        this.files = new File[slots];
+        this.detached = new byte[slots][];
+        this.created = new boolean[slots];
+        this.previous = new int[slots];
+        this.next = new int[slots];
+    }
+
+    // Files are written as gzip members from then on, see FixedWidthWriter
+    public void setCompressor(@Nullable GzipBlockCompressor compressor) {
+        this.compressor = compressor;
+    }
+
+    // Files left by an earlier run are continued without a new header
+    public void setAppendExisting(boolean appendExisting) {
+        this.appendExisting = appendExisting;
+    }
+
+    public FixedWidthWriter getWriter(int slot, File file, String header) throws IOException {
+        if (slot >= writers.length) {
+            grow(slot + 1);
+        }
+        FixedWidthWriter writer = writers[slot];
+        if (writer != null) {
+            if (slot != head) {
+                unlink(slot);
+                linkFirst(slot);
+            }
+            return writer;
+        }
+        if (openCount >= capacity) {
+            evictEldest();
+        }
+        boolean append = created[slot] || appendExisting && file.length() > 0;
+        writer = new FixedWidthWriter(file, append, buffers, compressor);
+        if (!append) {
+            startedFiles.add(file);
+            writer.append(header).append('\n').endRow();
+        }
+        created[slot] = true;
+        writers[slot] = writer;
+        files[slot] = file;
+        if (detached[slot] != null) {
+            writer.restore(detached[slot]);
+            detached[slot] = null;
+        }
+        openCount++;
+        linkFirst(slot);
+        return writer;
+    }
+
+    private void grow(int minSlots) {
+        int size = Math.max(minSlots, writers.length * 2);
+        writers = Arrays.copyOf(writers, size);
+        files = Arrays.copyOf(files, size);
+        detached = Arrays.copyOf(detached, size);
+        created = Arrays.copyOf(created, size);
+        previous = Arrays.copyOf(previous, size);
+        next = Arrays.copyOf(next, size);
+    }
+
+    private void linkFirst(int slot) {
+        previous[slot] = NONE;
+        next[slot] = head;
+        if (head != NONE) {
+            previous[head] = slot;
+        } else {
+            tail = slot;
+        }
+        head = slot;
+    }
+
+    private void unlink(int slot) {
+        int before = previous[slot];
+        int after = next[slot];
+        if (before != NONE) {
+            next[before] = after;
+        } else {
+            head = after;
+        }
+        if (after != NONE) {
+            previous[after] = before;
+        } else {
+            tail = before;
+        }
+    }
+
+    private void evictEldest() {
+        int eldest = tail;
+        unlink(eldest);
+        FixedWidthWriter writer = writers[eldest];
+        writers[eldest] = null;
+        openCount--;
+        try {
+            if (compressor != null) {
+                detached[eldest] = writer.detach();
+                return;
+            }
+            writer.close();
+        } catch (IOException e) {
+            evictionFailures.put(files[eldest], e);
+        }
+        files[eldest] = null;
+    }
+
+    public List<File> getStartedFiles() {
+        return startedFiles;
+    }
+
+    // Moves the files whose writer failed to close on eviction into `errors`
+    public void drainEvictionFailures(Map<File, ? super IOException> errors) {
+        if (!evictionFailures.isEmpty()) {
+            errors.putAll(evictionFailures);
+            evictionFailures.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (int slot = head; slot != NONE; slot = next[slot]) {
+            try {
+                writers[slot].close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+            writers[slot] = null;
+            files[slot] = null;
+        }
+        head = NONE;
+        tail = NONE;
+        openCount = 0;
+        // Rows of files evicted and not reopened since
+        for (int slot = 0; slot < detached.length; slot++) {
+            if (detached[slot] == null) {
+                continue;
+            }
+            try (FixedWidthWriter writer = new FixedWidthWriter(files[slot], true, buffers, compressor)) {
+                writer.restore(detached[slot]);
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+            detached[slot] = null;
+            files[slot] = null;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Counter files of a P layout input, where PRN is the first field counted, with and without a type selection
+class ComponentCounterTest {
+
+    private static final List<String> OBS_TYPES = List.of("C1C", "L1C", "S1C");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void countsAllSelectedTypesLikeNoSelection() throws IOException {
+        File input = generate();
+        assertEquals(count(input, null), count(input, List.of("C1", "L1", "S1")));
+    }
+
+    @Test
+    void keepsPrnColumnOfNarrowedSelection() throws IOException {
+        File input = generate();
+        List<String> all = count(input, null);
+        List<String> narrowed = count(input, List.of("C1"));
+        assertEquals(all.size(), narrowed.size());
+        for (int i = 0; i < all.size(); i++) {
+            // System, date, time, lines, PRN and C1C
+            List<String> expected = Arrays.asList(all.get(i).split(" ")).subList(0, 6);
+            assertEquals(String.join(" ", expected) + " ", narrowed.get(i));
+        }
+    }
+
+    private File generate() throws IOException {
+        File file = tempDir.resolve("abcd0010.20p.tab").toFile();
+        new TabGenerator(FormatType.P)
+                .setSystems(List.of(Constellation.GPS, Constellation.GLONASS))
+                .setObsTypes(OBS_TYPES)
+                .setDuration(600_000)
+                .setInterval(30_000)
+                .setNullRatio(0.2)
+                .generate(file);
+        return file;
+    }
+
+    private List<String> count(File input, List<String> obsTypes) throws IOException {
+        File outputDir = Files.createTempDirectory(tempDir, "out").toFile();
+        try (TabFileProcessor processor = new TabFileProcessor()
+                .addConsumer(new ComponentCounter(outputDir, null, obsTypes, ForkJoinPool.commonPool()))) {
+            processor.process(input);
+        }
+        return Files.readAllLines(ComponentCounter.getFile(outputDir, false).toPath());
+    }
+}
@@ -0,0 +1,81 @@
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Every second of the day, with and without fractions, against the former
+// LocalTime.parse + String.format + rightPad formatting
+class DecimalHourFormatterTest {
+
+    private static final String[] FRACTIONS = {"", ".", ".0000000", ".0000001", ".5000000", ".9999999"};
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void formatsEverySecondOfTheDay() {
+        for (int second = 0; second < 86400; second++) {
+            for (String fraction : FRACTIONS) {
+                String time = getTime(second) + fraction;
+                assertEquals(expected(time).trim(), DecimalHourFormatter.format(time), time);
+            }
+        }
+    }
+
+    @Test
+    void formatsMinutesWithoutSeconds() {
+        for (int minute = 0; minute < 24 * 60; minute++) {
+            String time = getTime(minute * 60).substring(0, 5);
+            assertEquals(expected(time).trim(), DecimalHourFormatter.format(time), time);
+        }
+    }
+
+    @Test
+    void appendsPaddedColumn() throws IOException {
+        File file = tempDir.resolve("hours.txt").toFile();
+        List<String> expected = new ArrayList<>();
+        TabLineCursor line = new TabLineCursor();
+        ByteBufferPool pool = new ByteBufferPool(ByteBufferPool.DEFAULT_BUFFER_SIZE, 1);
+        try (FixedWidthWriter writer = new FixedWidthWriter(file, false, pool)) {
+            for (int second = 0; second < 86400; second++) {
+                String time = getTime(second) + FRACTIONS[second % FRACTIONS.length];
+                line.reset("OBS " + time);
+                DecimalHourFormatter.appendPadded(line, 1, writer);
+                writer.newLine();
+                expected.add(expected(time));
+            }
+        }
+        assertEquals(expected, Files.readAllLines(file.toPath()));
+    }
+
+    @Test
+    void rejectsTimesLocalTimeRejects() {
+        for (String time : new String[]{"24:00:00", "12:60:00", "12:00:60", "1:00:00", "12:00:0", "12-00-00",
+                "12:00:00.1234567890", "12:00:00.12a"}) {
+            assertThrows(DateTimeException.class, () -> LocalTime.parse(time), time);
+            assertThrows(RuntimeException.class, () -> DecimalHourFormatter.format(time), time);
+        }
+    }
+
+    private static String getTime(int secondOfDay) {
+        return String.format(Locale.US, "%02d:%02d:%02d", secondOfDay / 3600, secondOfDay / 60 % 60, secondOfDay % 60);
+    }
+
+    private static String expected(String time) {
+        LocalTime localTime = LocalTime.parse(time);
+        double hours = localTime.getHour() + localTime.getMinute() / 60. + localTime.getSecond() / 3600.;
+        return StringUtils.rightPad(String.format(Locale.US, "%08.6f", hours), TabFormat.DEFAULT_COLUMN_PAD);
+    }
+}
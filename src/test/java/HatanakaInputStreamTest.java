@@ -0,0 +1,47 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Compact RINEX fixtures next to the RINEX they expand to
+class HatanakaInputStreamTest {
+
+    // Arcs longer than their order, gaps, a satellite leaving and coming back,
+    // flags set and cleared, clock on and off and an event with two comments
+    @Test
+    void expandsRinex3() throws Exception {
+        assertExpands("ABCD00XXX_R_20200010000_01H_30S_MO.crx", "ABCD00XXX_R_20200010000_01H_30S_MO.rnx");
+    }
+
+    // 13 satellites and 6 types continue the epoch and observation lines, the epoch
+    // after the event starts over
+    @Test
+    void expandsRinex2() throws Exception {
+        assertExpands("abcd0010.20d", "abcd0010.20o");
+    }
+
+    @Test
+    void appliesTextDifference() {
+        assertEquals(" 1 5", HatanakaInputStream.applyDifference("", " 1 5"));
+        assertEquals("11 5", HatanakaInputStream.applyDifference(" 1 5", "1"));
+        assertEquals("   5", HatanakaInputStream.applyDifference("11 5", "&&"));
+        assertEquals("   5 8", HatanakaInputStream.applyDifference("   5", "     8"));
+    }
+
+    private static void assertExpands(String compact, String expected) throws IOException, URISyntaxException {
+        try (InputStream in = new HatanakaInputStream(Files.newInputStream(getResource(compact)))) {
+            assertEquals(Files.readString(getResource(expected), StandardCharsets.ISO_8859_1),
+                    new String(in.readAllBytes(), StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    private static Path getResource(String name) throws URISyntaxException {
+        return Path.of(HatanakaInputStreamTest.class.getResource("/hatanaka/" + name).toURI());
+    }
+}
@@ -0,0 +1,98 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Live updates from inputs covering the same time range, as LiveRunner runs them
+class LiveCheckpointTest {
+
+    private static final String[] TIMES = {"00:00:00.0000000", "00:00:30.0000000", "00:01:00.0000000"};
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void keepsSystemsOfTheSameHour() throws Exception {
+        File outputDir = tempDir.resolve("out").toFile();
+        update(writeInput("g.20o.tab", "G", "C1C", "G01", "G02"), outputDir);
+        update(writeInput("r.20o.tab", "R", "C1C", "R01"), outputDir);
+
+        assertEquals(TIMES.length + 1, readLines(outputDir, "grouped-files/G/G01.txt").size());
+        assertEquals(TIMES.length + 1, readLines(outputDir, "grouped-files/G/G02.txt").size());
+        assertEquals(TIMES.length + 1, readLines(outputDir, "grouped-files/R/R01.txt").size());
+        assertEquals(List.of("G", "R"), getCounterSystems(outputDir));
+
+        OutputEpochs epochs = LiveCheckpoint.load(outputDir).getOutputEpochs();
+        String last = "2020-01-01 " + TIMES[TIMES.length - 1];
+        assertEquals(last, epochs.get("grouped-files/G/G01.txt").toString());
+        assertEquals(last, epochs.get("grouped-files/R/R01.txt").toString());
+        assertEquals(last, epochs.get(OutputEpochs.getCounterOutput(ComponentCounter.COMPONENT_FILE_NAME, "R")).toString());
+    }
+
+    @Test
+    void skipsRowsAlreadyWritten() throws Exception {
+        File outputDir = tempDir.resolve("out").toFile();
+        File input = writeInput("g.20o.tab", "G", "C1C", "G01");
+        update(input, outputDir);
+        List<String> grouped = readLines(outputDir, "grouped-files/G/G01.txt");
+        List<String> counted = readLines(outputDir, ComponentCounter.COMPONENT_FILE_NAME);
+
+        update(input, outputDir);
+        // A new satellite of an epoch already written still gets its file
+        update(writeInput("g2.20o.tab", "G", "C1C", "G01", "G03"), outputDir);
+
+        assertEquals(grouped, readLines(outputDir, "grouped-files/G/G01.txt"));
+        assertEquals(TIMES.length + 1, readLines(outputDir, "grouped-files/G/G03.txt").size());
+        assertEquals(counted, readLines(outputDir, ComponentCounter.COMPONENT_FILE_NAME));
+    }
+
+    private static void update(File input, File outputDir) throws IOException, InterruptedException {
+        outputDir.mkdirs();
+        LiveCheckpoint checkpoint = LiveCheckpoint.load(outputDir);
+        OutputEpochs epochs = checkpoint.getOutputEpochs();
+        int exitCode = new ConversionJob(input, outputDir, null, null, null)
+                .setAppend(true)
+                .setOutputEpochs(epochs)
+                .run();
+        assertEquals(0, exitCode);
+        checkpoint.setOutputEpochs(epochs);
+        checkpoint.setInput(input, input.length(), input.lastModified(), List.of());
+        checkpoint.recordOutputs();
+        checkpoint.save();
+    }
+
+    private File writeInput(String name, String system, String obsType, String... satellites) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("#OBS " + system + "   DATE       TIME             PRN             " + obsType);
+        for (int i = 0; i < TIMES.length; i++) {
+            for (String satellite : satellites) {
+                lines.add("OBS " + system + " 2020-01-01 " + TIMES[i] + " " + satellite + "   " + (1000 + i) + ".000");
+            }
+        }
+        File file = tempDir.resolve(name).toFile();
+        Files.write(file.toPath(), lines);
+        return file;
+    }
+
+    private static List<String> readLines(File outputDir, String path) throws IOException {
+        return Files.readAllLines(new File(outputDir, path).toPath());
+    }
+
+    private static List<String> getCounterSystems(File outputDir) throws IOException {
+        List<String> systems = new ArrayList<>();
+        for (String line : readLines(outputDir, ComponentCounter.COMPONENT_FILE_NAME)) {
+            String system = line.substring(0, line.indexOf(' '));
+            if (!systems.contains(system)) {
+                systems.add(system);
+            }
+        }
+        return systems;
+    }
+}
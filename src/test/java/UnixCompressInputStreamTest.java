@@ -0,0 +1,56 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// .Z fixtures next to the text they decompress to, both also read by gzip -d
+class UnixCompressInputStreamTest {
+
+    // 16 bit codes, the width grows from 9 bits without filling the table
+    @Test
+    void decompressesGrowingCodes() throws Exception {
+        assertDecompresses("abcd0010.20o.Z");
+    }
+
+    // 10 bit codes, the table fills and is cleared several times
+    @Test
+    void decompressesClearedTable() throws Exception {
+        assertDecompresses("abcd0010.b10.20o.Z");
+    }
+
+    @Test
+    void readsOneByteAtATime() throws Exception {
+        byte[] expected = Files.readAllBytes(getResource("abcd0010.20o"));
+        byte[] actual = new byte[expected.length];
+        try (InputStream in = new UnixCompressInputStream(Files.newInputStream(getResource("abcd0010.20o.Z")))) {
+            for (int i = 0; i < actual.length; i++) {
+                actual[i] = (byte) in.read();
+            }
+            assertEquals(-1, in.read());
+        }
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    void rejectsOtherFiles() {
+        assertThrows(IOException.class, () -> new UnixCompressInputStream(new ByteArrayInputStream(new byte[]{0x1f, (byte) 0x8b, 8})));
+    }
+
+    private static void assertDecompresses(String name) throws IOException, URISyntaxException {
+        try (InputStream in = new UnixCompressInputStream(Files.newInputStream(getResource(name)))) {
+            assertArrayEquals(Files.readAllBytes(getResource("abcd0010.20o")), in.readAllBytes());
+        }
+    }
+
+    private static Path getResource(String name) throws URISyntaxException {
+        return Path.of(UnixCompressInputStreamTest.class.getResource("/compress/" + name).toURI());
+    }
+}